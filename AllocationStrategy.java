@@ -1,3 +1,5 @@
+import java.io.IOException;
+
 public interface AllocationStrategy {
 
     /**
@@ -7,7 +9,103 @@ public interface AllocationStrategy {
      * @param memory the total memory.
      * @return true if the block was alocated successfully, otherwise false.
      */
-    public boolean allocateBlock(int id, int bytes, Memory memory);
+    public boolean allocateBlock(int id, long bytes, Memory memory);
+
+    /**
+     * Notify the strategy that a block has been deallocated from memory.
+     * Strategies that keep their own free lists return the block to them.
+     * @param startAddress of the deallocated block.
+     * @param endAddress of the deallocated block.
+     * @param memory the total memory.
+     */
+    public default void deallocateBlock(long startAddress, long endAddress, Memory memory) {
+    }
+
+    /**
+     * Resize an allocated block in place, if the strategy can.
+     * By default the block is resized in memory with Memory.resizeBlock, which shrinks it
+     * or grows it into the free block right after it. Otherwise memory relocates the block.
+     * @param id of the block, the earliest allocated block with the id.
+     * @param startAddress of the block.
+     * @param endAddress of the block.
+     * @param bytes the new size of the block.
+     * @param memory the total memory.
+     * @return true if the block was resized in place, otherwise false.
+     */
+    public default boolean reallocateBlock(int id, long startAddress, long endAddress, long bytes, Memory memory) {
+        return memory.resizeBlock(id, startAddress + bytes - 1);
+    }
+
+    /**
+     * Notify the strategy that compaction has moved a block, before reset is called.
+     * Blocks are moved towards address 0 in address order.
+     * @param startAddress the old start address of the block.
+     * @param newStartAddress the new start address of the block.
+     * @param memory the total memory.
+     */
+    public default void moveBlock(long startAddress, long newStartAddress, Memory memory) {
+    }
+
+    /**
+     * Check if every block the strategy allocates has a power of two size and starts at a multiple of it.
+     * Compaction then keeps the blocks aligned, and is always full.
+     * @return true if blocks are aligned to their size, otherwise false.
+     */
+    public default boolean alignsBlocks() {
+        return false;
+    }
+
+    /**
+     * Rebuild any state of the strategy from the current allocated blocks of memory.
+     * Called when the capacity is set and after the memory is compacted.
+     * @param memory the total memory.
+     */
+    public default void reset(Memory memory) {
+    }
+
+    /**
+     * Write any state of the strategy that cannot be rebuilt by reset from the allocated blocks of memory.
+     * @param checkpoint where the state is written.
+     * @param memory the total memory.
+     * @throws IOException if the checkpoint cannot be written.
+     */
+    public default void writeState(Checkpoint checkpoint, Memory memory) throws IOException {
+    }
+
+    /**
+     * Read the state written by writeState, after reset has rebuilt the rest from the allocated blocks.
+     * @param checkpoint where the state is read from.
+     * @param memory the total memory.
+     * @throws IOException if the checkpoint cannot be read.
+     */
+    public default void readState(Checkpoint checkpoint, Memory memory) throws IOException {
+    }
+
+    /**
+     * Check if the strategy keeps its own free lists and never searches the free blocks of memory
+     * (findFirstFit, findBestFit, getLargestFreeBlockSize). Memory then skips its free block indexes,
+     * so the strategy must add each block at the start of a free block.
+     * @return true if the strategy keeps its own free lists, otherwise false.
+     */
+    public default boolean keepsFreeLists() {
+        return false;
+    }
+
+    /**
+     * Check if the strategy allocates more bytes than requested.
+     * @return true if the strategy reports internal fragmentation, otherwise false.
+     */
+    public default boolean hasInternalFragmentation() {
+        return false;
+    }
+
+    /**
+     * Return the share of the allocated bytes that were not requested.
+     * @return the internal fragmentation.
+     */
+    public default double getInternalFragmentation() {
+        return 0;
+    }
 
     /**
      * Return the name of the allocation strategy.
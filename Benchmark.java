@@ -0,0 +1,341 @@
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+class Benchmark {
+
+    private static final String[] STRATEGIES = {"first", "best", "worst", "next", "buddy", "tlsf"};
+    private static final String[] OPERATIONS = {"allocate+deallocate", "compact", "fragmentation"};
+    private static final int[] SIZE_CLASSES = {16, 32, 48, 64, 128, 256, 512, 1024, 4096};
+
+    private static int warmupIterations = 3;
+    private static int measurementIterations = 5;
+    private static long iterationNanos = 500_000_000L;
+    // Quick lists of every benchmarked memory, off by default.
+    private static int quickListSize = 0;
+    private static int quickListDepth = 0;
+    // Results are added here so the JIT cannot remove the measured calls.
+    private static volatile long sink;
+
+    /**
+     * Benchmark Memory with every allocation strategy over a grid of parameters.
+     * Options: --strategies=first,best,... --heap=bytes,... --live=blocks,... --sizes=uniform,exponential,classes
+     * --operations=allocate+deallocate,compact,fragmentation --warmup=n --iterations=n --time=ms
+     * --quick-lists[=size[:depth]] (see Memory.setQuickLists)
+     * --threads=n,... (concurrent throughput over a ConcurrentMemory; --operations= skips the others)
+     * @param args the options.
+     */
+    public static void main (String [] args) {
+        String[] strategies = STRATEGIES;
+        String[] operations = OPERATIONS;
+        long[] heapSizes = {1 << 20, 1 << 26};
+        int[] liveBlocks = {1_000, 100_000};
+        String[] sizeDistributions = {"uniform", "exponential", "classes"};
+        int[] threadCounts = {};
+        for (String arg : args) {
+            String value = arg.substring(arg.indexOf('=') + 1);
+            if (arg.startsWith("--strategies=")) {
+                strategies = value.split(",");
+            } else if (arg.startsWith("--operations=")) {
+                operations = value.isEmpty() ? new String[0] : value.split(",");
+            } else if (arg.startsWith("--heap=")) {
+                heapSizes = Arrays.stream(value.split(",")).mapToLong(Long::parseLong).toArray();
+            } else if (arg.startsWith("--live=")) {
+                liveBlocks = Arrays.stream(value.split(",")).mapToInt(Integer::parseInt).toArray();
+            } else if (arg.startsWith("--sizes=")) {
+                sizeDistributions = value.split(",");
+            } else if (arg.startsWith("--warmup=")) {
+                warmupIterations = Integer.parseInt(value);
+            } else if (arg.startsWith("--iterations=")) {
+                measurementIterations = Integer.parseInt(value);
+            } else if (arg.startsWith("--threads=")) {
+                threadCounts = Arrays.stream(value.split(",")).mapToInt(Integer::parseInt).toArray();
+            } else if (arg.equals("--quick-lists")) {
+                quickListSize = Main.DEFAULT_QUICK_LIST_SIZE;
+                quickListDepth = Main.DEFAULT_QUICK_LIST_DEPTH;
+            } else if (arg.startsWith("--quick-lists=")) {
+                String[] quickLists = value.split(":");
+                quickListSize = Integer.parseInt(quickLists[0]);
+                quickListDepth = quickLists.length > 1 ? Integer.parseInt(quickLists[1]) : Main.DEFAULT_QUICK_LIST_DEPTH;
+            } else if (arg.startsWith("--time=")) {
+                iterationNanos = Long.parseLong(value) * 1_000_000L;
+            } else {
+                throw new IllegalArgumentException("Unknown option: " + arg);
+            }
+        }
+
+        System.out.printf("%-10s %-20s %12s %10s %-12s %14s %12s %12s %8s%n",
+                "Strategy", "Operation", "Heap", "Live", "Sizes", "ops/s", "ns/op", "B/op", "GCs");
+        for (String operation : operations) {
+            for (String strategy : strategies) {
+                for (long heapSize : heapSizes) {
+                    for (int live : liveBlocks) {
+                        for (String sizeDistribution : sizeDistributions) {
+                            run(strategy, operation, heapSize, live, sizeDistribution);
+                        }
+                    }
+                }
+            }
+        }
+
+        // With --threads, also measure concurrent throughput for each thread count (the last column is threads).
+        for (int threadCount : threadCounts) {
+            for (String strategy : strategies) {
+                for (long heapSize : heapSizes) {
+                    for (int live : liveBlocks) {
+                        for (String sizeDistribution : sizeDistributions) {
+                            runConcurrent(strategy, heapSize, live, sizeDistribution, threadCount);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Warm up and measure one benchmark, then print its averaged results.
+     */
+    private static void run(String strategy, String operation, long heapSize, int live, String sizeDistribution) {
+        Workload workload = new Workload(strategy, heapSize, live, sizeDistribution);
+        for (int i = 0; i < warmupIterations; i++) {
+            measure(workload, operation);
+        }
+        double[] totals = new double[4];
+        for (int i = 0; i < measurementIterations; i++) {
+            double[] result = measure(workload, operation);
+            for (int j = 0; j < totals.length; j++) {
+                totals[j] += result[j] / measurementIterations;
+            }
+        }
+        System.out.printf("%-10s %-20s %12d %10d %-12s %14.0f %12.1f %12.1f %8.1f%n",
+                strategy, operation, heapSize, live, sizeDistribution, totals[0], totals[1], totals[2], totals[3]);
+    }
+
+    /**
+     * Run the operation repeatedly for one iteration.
+     * @return throughput (ops/s), average latency (ns/op), allocation (bytes/op) and garbage collections.
+     */
+    private static double[] measure(Workload workload, String operation) {
+        long operations = 0;
+        long measuredNanos = 0;
+        long allocatedBytes = getAllocatedBytes();
+        long collections = getCollectionCount();
+        long start = System.nanoTime();
+        while (System.nanoTime() - start < iterationNanos) {
+            switch (operation) {
+                case "allocate+deallocate":
+                    long batchStart = System.nanoTime();
+                    for (int i = 0; i < 1000; i++) {
+                        workload.churn();
+                    }
+                    measuredNanos += System.nanoTime() - batchStart;
+                    operations += 1000;
+                    break;
+                case "compact":
+
+                    // Only the compaction itself is timed, not the churn that fragments memory again.
+                    workload.fragment();
+                    long compactStart = System.nanoTime();
+                    workload.compact();
+                    measuredNanos += System.nanoTime() - compactStart;
+                    operations++;
+                    break;
+                case "fragmentation":
+                    long fragmentationStart = System.nanoTime();
+                    for (int i = 0; i < 1000; i++) {
+                        sink += (long) (workload.getFragmentation() * 1000);
+                    }
+                    measuredNanos += System.nanoTime() - fragmentationStart;
+                    operations += 1000;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown operation: " + operation);
+            }
+        }
+        double nanosPerOperation = (double) measuredNanos / operations;
+        return new double[] {
+            1e9 / nanosPerOperation,
+            nanosPerOperation,
+            (double) (getAllocatedBytes() - allocatedBytes) / operations,
+            getCollectionCount() - collections
+        };
+    }
+
+    private static long getAllocatedBytes() {
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0;
+    }
+
+    private static long getCollectionCount() {
+        long collections = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            collections += Math.max(0, collector.getCollectionCount());
+        }
+        return collections;
+    }
+
+    /**
+     * A memory filled with live blocks, kept at a steady state by replacing random blocks.
+     * Also the state of the JMH benchmarks (see benchmarks/jmh/MemoryBenchmark).
+     */
+    static class Workload {
+        private Memory memory;
+        private SplittableRandom random;
+        private String sizeDistribution;
+        private long meanSize;
+        private int[] liveIds;
+        private int liveCount;
+        private int nextId;
+
+        /**
+         * Constructor, fills the memory with live blocks.
+         * @param strategy the name of the allocation strategy.
+         * @param heapSize the capacity of the memory.
+         * @param live the number of live blocks.
+         * @param sizeDistribution uniform, exponential or classes.
+         */
+        Workload(String strategy, long heapSize, int live, String sizeDistribution) {
+            memory = new Memory(Main.createStrategy(strategy));
+            memory.setCapacity(heapSize);
+            memory.setQuickLists(quickListSize, quickListDepth);
+            random = new SplittableRandom(42);
+            this.sizeDistribution = sizeDistribution;
+
+            // Live blocks fill about half of the heap on average.
+            meanSize = Math.max(1, heapSize / live / 2);
+            liveIds = new int[live];
+            for (int i = 0; i < live; i++) {
+                if (!allocate()) {
+                    break;
+                }
+            }
+        }
+
+        /**
+         * Deallocate a random live block and allocate a new one.
+         * @return true if the new block was allocated.
+         */
+        boolean churn() {
+            if (liveCount > 0) {
+                int index = random.nextInt(liveCount);
+                memory.deallocateBlock(liveIds[index]);
+                liveIds[index] = liveIds[--liveCount];
+            }
+            return allocate();
+        }
+
+        /**
+         * Replace a tenth of the live blocks, leaving holes all over memory.
+         */
+        void fragment() {
+            for (int i = liveIds.length / 10; i > 0; i--) {
+                churn();
+            }
+        }
+
+        /**
+         * Compact the memory.
+         */
+        void compact() {
+            memory.compact();
+        }
+
+        /**
+         * Return the fragmentation of the memory.
+         * @return the fragmentation.
+         */
+        double getFragmentation() {
+            return memory.getFragmentation();
+        }
+
+        private boolean allocate() {
+            int id = nextId++;
+            if (memory.allocateBlock(id, nextSize(random, sizeDistribution, meanSize))) {
+                if (liveCount < liveIds.length) {
+                    liveIds[liveCount++] = id;
+                } else {
+                    memory.deallocateBlock(id);
+                }
+                return true;
+            }
+            return false;
+        }
+
+    }
+
+    /**
+     * Measure the total throughput of threads that each replace random blocks of their own in a shared
+     * ConcurrentMemory, with one arena per thread. ConcurrentMemoryTest checks the results of the same churn.
+     */
+    private static void runConcurrent(String strategy, long heapSize, int live, String sizeDistribution, int threadCount) {
+        ConcurrentMemory memory = new ConcurrentMemory(heapSize, threadCount, () -> Main.createStrategy(strategy));
+        long meanSize = Math.max(1, heapSize / live / 2);
+        long[] operations = new long[threadCount];
+        Thread[] threads = new Thread[threadCount];
+        SplittableRandom seeds = new SplittableRandom(42);
+        long end = System.nanoTime() + (warmupIterations + measurementIterations) * iterationNanos;
+        long measureStart = System.nanoTime() + warmupIterations * iterationNanos;
+
+        for (int t = 0; t < threadCount; t++) {
+            int thread = t;
+            SplittableRandom random = seeds.split();
+            threads[t] = new Thread(() -> {
+
+                // Ids of thread t are t, t + threadCount, t + 2 * threadCount, ...
+                int[] liveIds = new int[Math.max(1, live / threadCount)];
+                int liveCount = 0;
+                int nextId = thread;
+                long now;
+                while ((now = System.nanoTime()) < end) {
+                    for (int i = 0; i < 1000; i++) {
+                        if (liveCount == liveIds.length) {
+                            int index = random.nextInt(liveCount);
+                            memory.deallocateBlock(liveIds[index]);
+                            liveIds[index] = liveIds[--liveCount];
+                        }
+                        if (memory.allocateBlock(nextId, nextSize(random, sizeDistribution, meanSize))) {
+                            liveIds[liveCount++] = nextId;
+                        }
+                        nextId += threadCount;
+                    }
+                    if (now >= measureStart) {
+                        operations[thread] += 1000;
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        long totalOperations = 0;
+        for (int t = 0; t < threadCount; t++) {
+            try {
+                threads[t].join();
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            totalOperations += operations[t];
+        }
+        double seconds = measurementIterations * iterationNanos / 1e9;
+        System.out.printf("%-10s %-20s %12d %10d %-12s %14.0f %12s %12s %8d%n",
+                strategy, "concurrent", heapSize, live, sizeDistribution, totalOperations / seconds, "-", "-", threadCount);
+    }
+
+    private static long nextSize(SplittableRandom random, String sizeDistribution, long meanSize) {
+        switch (sizeDistribution) {
+            case "uniform":
+
+                // Ranges that fit an int are drawn as before, so the workloads stay the same.
+                return 1 + (2 * meanSize <= Integer.MAX_VALUE ? random.nextInt((int) (2 * meanSize)) : random.nextLong(2 * meanSize));
+            case "exponential":
+                return 1 + (long) (-meanSize * Math.log(1 - random.nextDouble()));
+            case "classes":
+                return SIZE_CLASSES[random.nextInt(SIZE_CLASSES.length)];
+            default:
+                throw new IllegalArgumentException("Unknown size distribution: " + sizeDistribution);
+        }
+    }
+
+}
@@ -1,23 +1,24 @@
 public class BestFit implements AllocationStrategy {
 
     @Override
-    public boolean allocateBlock(int id, int bytes, Memory memory) {
+    public boolean allocateBlock(int id, long bytes, Memory memory) {
 
-        // Find the best fitting (smallest) free block in memory.
-        Block bestFitBlock = new Block(-1, 0, memory.getCapacity() - 1);
-        for (Block freeBlock : memory.getFreeBlocks()) {
-            if (freeBlock.getSize() >= bytes && freeBlock.getSize() < bestFitBlock.getSize()) {
-                bestFitBlock = freeBlock;
-            }
+        // If memory is empty alocate the block at the lowest address.
+        if (memory.isEmpty()) {
+            memory.addBlock(id, 0, bytes - 1);
+            return true;
         }
 
+        // Find the best fitting (smallest) free block in memory.
+        long startAddress = memory.findBestFit(bytes);
+
         // If no free block found return false.
-        if (bestFitBlock.getSize() == memory.getCapacity()) {
+        if (startAddress < 0) {
             return false;
         }
 
         // Otherwise allocate the block and retun true.
-        memory.addBlock(new Block(id) , bestFitBlock.getStartAddress(), bestFitBlock.getStartAddress() + bytes - 1);
+        memory.addBlock(id, startAddress, startAddress + bytes - 1);
         return true;
         
     }
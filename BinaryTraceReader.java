@@ -0,0 +1,119 @@
+import java.io.IOException;
+
+public class BinaryTraceReader implements TraceReader {
+
+    private MappedFileReader file;
+    private int version;
+    private long capacity;
+    private long remainingInstructions;
+    private int command;
+    private int id;
+    private long bytes;
+
+    /**
+     * Constructor, reads the header of the binary trace file.
+     * @param path of the binary trace file.
+     * @throws IOException if the file cannot be read or is not a binary trace.
+     */
+    public BinaryTraceReader(String path) throws IOException {
+        file = new MappedFileReader(path);
+
+        // The version 1 header, with a 4 byte capacity, is the shortest.
+        if (file.getFileSize() < BinaryTraceWriter.HEADER_SIZE - 4 || readInt() != BinaryTraceWriter.MAGIC) {
+            throw new IOException("Not a binary trace: " + path);
+        }
+        version = file.read();
+        if (version != 1 && version != BinaryTraceWriter.VERSION) {
+            throw new IOException("Unsupported binary trace version " + version + ": " + path);
+        }
+        capacity = version == 1 ? readInt() : readLong();
+        remainingInstructions = readLong();
+    }
+
+    @Override
+    public long getCapacity() {
+        return capacity;
+    }
+
+    @Override
+    public boolean next() throws IOException {
+        if (remainingInstructions == 0) {
+            return false;
+        }
+        remainingInstructions--;
+        command = file.read();
+        if (command == TraceReader.ALLOCATE || command == TraceReader.DEALLOCATE || command == TraceReader.REALLOCATE) {
+            id = readVarint();
+        }
+        if (command == TraceReader.ALLOCATE || command == TraceReader.REALLOCATE) {
+            bytes = version == 1 ? readVarint() : readVarLong();
+        }
+        if (command < TraceReader.UNKNOWN || command > TraceReader.REALLOCATE) {
+            throw new IOException("Corrupt binary trace");
+        }
+        return true;
+    }
+
+    @Override
+    public int getCommand() {
+        return command;
+    }
+
+    @Override
+    public int getId() {
+        return id;
+    }
+
+    @Override
+    public long getBytes() {
+        return bytes;
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+
+    private int readInt() throws IOException {
+        int value = 0;
+        for (int i = 0; i < 4; i++) {
+            value = (value << 8) | file.read();
+        }
+        return value;
+    }
+
+    private long readLong() throws IOException {
+        return ((long) readInt() << 32) | (readInt() & 0xFFFFFFFFL);
+    }
+
+    private int readVarint() throws IOException {
+        int zigzag = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = file.read();
+            if (b == MappedFileReader.END_OF_FILE || shift > 28) {
+                throw new IOException("Corrupt binary trace");
+            }
+            zigzag |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return (zigzag >>> 1) ^ -(zigzag & 1);
+    }
+
+    private long readVarLong() throws IOException {
+        long zigzag = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = file.read();
+            if (b == MappedFileReader.END_OF_FILE || shift > 63) {
+                throw new IOException("Corrupt binary trace");
+            }
+            zigzag |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return (zigzag >>> 1) ^ -(zigzag & 1);
+    }
+
+}
@@ -0,0 +1,96 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+public class BinaryTraceWriter implements Closeable {
+
+    // Header: magic, version, capacity and number of instructions.
+    // Each instruction is its command byte followed, for A, D and R, by the zigzag varint id and, for A and R, bytes.
+    // Version 1 had a 4 byte capacity and bytes in the range of int, and can still be read.
+    public static final int MAGIC = 0x4D545243;
+    public static final int VERSION = 2;
+    public static final int HEADER_SIZE = 4 + 1 + 8 + 8;
+
+    private FileChannel channel;
+    private ByteBuffer buffer;
+    private long capacity;
+    private long instructionCount;
+
+    /**
+     * Constructor, creates or truncates the binary trace file.
+     * @param path of the binary trace file.
+     * @param capacity of the memory.
+     * @throws IOException if the file cannot be created.
+     */
+    public BinaryTraceWriter(String path, long capacity) throws IOException {
+        channel = FileChannel.open(Paths.get(path), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        buffer = ByteBuffer.allocateDirect(1 << 16);
+        this.capacity = capacity;
+        channel.position(HEADER_SIZE);
+    }
+
+    /**
+     * Append an instruction to the trace.
+     * @param command of the instruction, as in TraceReader.
+     * @param id of the block, for allocate, deallocate and reallocate.
+     * @param bytes of the block, for allocate and reallocate.
+     * @throws IOException if the file cannot be written.
+     */
+    public void write(int command, int id, long bytes) throws IOException {
+        if (buffer.remaining() < 16) {
+            flush();
+        }
+        buffer.put((byte) command);
+        if (command == TraceReader.ALLOCATE || command == TraceReader.DEALLOCATE || command == TraceReader.REALLOCATE) {
+            writeVarint(id);
+        }
+        if (command == TraceReader.ALLOCATE || command == TraceReader.REALLOCATE) {
+            writeVarLong(bytes);
+        }
+        instructionCount++;
+    }
+
+    /**
+     * Write the remaining instructions and the header, and close the file.
+     * @throws IOException if the file cannot be written.
+     */
+    @Override
+    public void close() throws IOException {
+        flush();
+        buffer.putInt(MAGIC).put((byte) VERSION).putLong(capacity).putLong(instructionCount);
+        buffer.flip();
+        channel.write(buffer, 0);
+        channel.close();
+    }
+
+    private void writeVarint(int value) {
+        int zigzag = (value << 1) ^ (value >> 31);
+        while ((zigzag & ~0x7F) != 0) {
+            buffer.put((byte) ((zigzag & 0x7F) | 0x80));
+            zigzag >>>= 7;
+        }
+        buffer.put((byte) zigzag);
+    }
+
+    private void writeVarLong(long value) {
+        long zigzag = (value << 1) ^ (value >> 63);
+        while ((zigzag & ~0x7FL) != 0) {
+            buffer.put((byte) ((zigzag & 0x7F) | 0x80));
+            zigzag >>>= 7;
+        }
+        buffer.put((byte) zigzag);
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+}
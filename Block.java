@@ -1,8 +1,16 @@
+import java.nio.ByteBuffer;
+
 public class Block {
     
     private int id;
-    private int startAddress;
-    private int endAddress;
+    private long startAddress;
+    private long endAddress;
+    // View of the block's bytes when the memory has storage, otherwise null.
+    private ByteBuffer buffer;
+    // The extent this is a view of and its version then, to detect that the memory changed it, or null for a copy.
+    private Extents extents;
+    private int extent;
+    private int version;
 
     /**
      * Constructor.
@@ -18,7 +26,7 @@ public class Block {
      * @param startAddress of the block.
      * @param endAddress of the block.
      */
-    public Block(int id, int startAddress, int endAddress) {
+    public Block(int id, long startAddress, long endAddress) {
         this.id = id;
         this.startAddress = startAddress;
         this.endAddress = endAddress;
@@ -29,7 +37,7 @@ public class Block {
      * @param startAddress of the block in the memory.
      * @param endAddressof the block in the memory.
      */
-    public void allocate(int startAddress, int endAddress) {
+    public void allocate(long startAddress, long endAddress) {
         this.startAddress = startAddress;
         this.endAddress = endAddress;
     }
@@ -46,7 +54,8 @@ public class Block {
      * Return the start address of the block in the memory.
      * @return the start address.
      */
-    public int getStartAddress() {
+    public long getStartAddress() {
+        checkCurrent();
         return startAddress;
     }
 
@@ -54,7 +63,8 @@ public class Block {
      * Return the end address of the block in the memory.
      * @return the end address.
      */
-    public int getEndAddress() {
+    public long getEndAddress() {
+        checkCurrent();
         return endAddress;
     }
 
@@ -62,7 +72,49 @@ public class Block {
      * Return the size of the block.
      * @return the size.
      */
-    public int getSize() {
+    public long getSize() {
+        checkCurrent();
         return endAddress - startAddress + 1;
     }
+
+    /**
+     * Return a view of the block's bytes in the memory's storage, from position 0 to the block's size.
+     * Like the addresses, it belongs to the block as the memory returned it: once the memory moves, resizes
+     * or deallocates the block, this view throws IllegalStateException and the block must be fetched again.
+     * @return the view, or null if the memory has no storage or the block is free.
+     */
+    public ByteBuffer getBuffer() {
+        checkCurrent();
+        return buffer;
+    }
+
+    /**
+     * Set the view of the block's bytes.
+     * @param buffer the view, or null.
+     */
+    void setBuffer(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    /**
+     * Make this a view of an extent of the memory, which is stale once the extent changes.
+     * @param extents of the memory.
+     * @param extent the handle of the extent.
+     */
+    void setExtent(Extents extents, int extent) {
+        this.extents = extents;
+        this.extent = extent;
+        version = extents.getVersion(extent);
+    }
+
+    /**
+     * Check that the memory has not moved, resized or deallocated the block since this view was taken,
+     * since its addresses and bytes would no longer be the block's (or would be those of another block).
+     */
+    private void checkCurrent() {
+        if (extents != null && extents.getVersion(extent) != version) {
+            throw new IllegalStateException("Stale view of block " + id
+                    + ": it was moved, resized or deallocated, fetch it again from the memory");
+        }
+    }
 }
@@ -0,0 +1,328 @@
+import java.io.IOException;
+import java.util.Arrays;
+
+public class BuddyAllocator implements AllocationStrategy {
+
+    private static final int MAX_ORDER = 62;
+
+    // Start addresses of the free blocks of size 2^order, per order, in a min-heap so the lowest address is first.
+    private long[][] freeLists;
+    private int[] freeCounts;
+    // Order and position in its heap (position * 64 + order) of each free block, by start address.
+    private LongLongMap freePositions;
+    // Bit i is set if the free list of order i is not empty.
+    private long freeOrders;
+    // Requested bytes of each allocated block, by start address.
+    private LongLongMap requestedBytes;
+    private long totalRequestedBytes;
+    private long totalAllocatedBytes;
+
+    /**
+     * Constructor.
+     */
+    public BuddyAllocator() {
+        freeLists = new long[MAX_ORDER + 1][16];
+        freeCounts = new int[MAX_ORDER + 1];
+        freePositions = new LongLongMap();
+        requestedBytes = new LongLongMap();
+    }
+
+    @Override
+    public boolean allocateBlock(int id, long bytes, Memory memory) {
+
+        // Round the request up to a power of two.
+        int order = getOrder(bytes);
+        if (order > MAX_ORDER) {
+            return false;
+        }
+
+        // Find the smallest free block that is big enough.
+        long availableOrders = freeOrders & (-1L << order);
+        if (availableOrders == 0) {
+            return false;
+        }
+        int freeOrder = Long.numberOfTrailingZeros(availableOrders);
+        long startAddress = removeFree(freeOrder, freeLists[freeOrder][0]);
+        Metrics metrics = memory.getMetrics();
+        if (metrics != null) {
+            metrics.examine(1);
+            metrics.strategySplits(freeOrder - order);
+        }
+
+        // Split it, keeping the lower half, until it has the requested order.
+        while (freeOrder > order) {
+            freeOrder--;
+            addFree(freeOrder, startAddress + (1L << freeOrder));
+        }
+
+        // Allocate the block and retun true.
+        memory.addBlock(id, startAddress, startAddress + (1L << order) - 1);
+        requestedBytes.put(startAddress, bytes);
+        totalRequestedBytes += bytes;
+        totalAllocatedBytes += 1L << order;
+        return true;
+    }
+
+    @Override
+    public void deallocateBlock(long startAddress, long endAddress, Memory memory) {
+        long bytes = requestedBytes.remove(startAddress);
+        if (bytes != LongLongMap.MISSING) {
+            totalRequestedBytes -= bytes;
+            totalAllocatedBytes -= endAddress - startAddress + 1;
+        }
+        int merges = freeRange(startAddress, endAddress);
+        if (memory.getMetrics() != null) {
+            memory.getMetrics().strategyCoalesces(merges);
+        }
+    }
+
+    @Override
+    public boolean reallocateBlock(int id, long startAddress, long endAddress, long bytes, Memory memory) {
+        int order = getOrder(endAddress - startAddress + 1);
+        int newOrder = getOrder(bytes);
+        if (newOrder > MAX_ORDER) {
+            return false;
+        }
+        Metrics metrics = memory.getMetrics();
+        if (newOrder < order) {
+
+            // Shrink to the lower part of the block, freeing the upper buddies.
+            memory.resizeBlock(id, startAddress + (1L << newOrder) - 1);
+            freeRange(startAddress + (1L << newOrder), endAddress);
+            if (metrics != null) {
+                metrics.strategySplits(order - newOrder);
+            }
+        } else if (newOrder > order) {
+
+            // Grow only if the block is the lower half of each bigger block up to the new order, and the upper halves are free.
+            for (int buddyOrder = order; buddyOrder < newOrder; buddyOrder++) {
+                long buddyAddress = startAddress + (1L << buddyOrder);
+                if ((startAddress & (1L << buddyOrder)) != 0 || !isFree(buddyOrder, buddyAddress)) {
+                    return false;
+                }
+            }
+            if (!memory.resizeBlock(id, startAddress + (1L << newOrder) - 1)) {
+                return false;
+            }
+            for (int buddyOrder = order; buddyOrder < newOrder; buddyOrder++) {
+                removeFree(buddyOrder, startAddress + (1L << buddyOrder));
+            }
+            if (metrics != null) {
+                metrics.strategyCoalesces(newOrder - order);
+            }
+        }
+        long requested = requestedBytes.get(startAddress);
+        requestedBytes.put(startAddress, bytes);
+        totalRequestedBytes += bytes - requested;
+        totalAllocatedBytes += (1L << newOrder) - (1L << order);
+        return true;
+    }
+
+    @Override
+    public void moveBlock(long startAddress, long newStartAddress, Memory memory) {
+        requestedBytes.put(newStartAddress, requestedBytes.remove(startAddress));
+    }
+
+    @Override
+    public boolean alignsBlocks() {
+        return true;
+    }
+
+    /**
+     * Rebuild the free lists from the gaps between the allocated blocks.
+     * This visits every block, but is only called when the capacity is set (without blocks), after a compaction
+     * and on resume, which visit every block anyway. Allocate and deallocate never scan.
+     * @param memory the total memory.
+     */
+    @Override
+    public void reset(Memory memory) {
+        Arrays.fill(freeCounts, 0);
+        freePositions.clear();
+        freeOrders = 0;
+
+        // Free the gaps between the allocated blocks, which compaction keeps aligned, though not the gaps themselves.
+        long startAddress = 0;
+        for (Block block : memory.getSortedBlocks()) {
+            freeRange(startAddress, block.getStartAddress() - 1);
+            startAddress = block.getEndAddress() + 1;
+        }
+        freeRange(startAddress, memory.getCapacity() - 1);
+    }
+
+    @Override
+    public void writeState(Checkpoint checkpoint, Memory memory) throws IOException {
+
+        // The free lists are rebuilt by reset, only the requested bytes are lost.
+        for (Block block : memory.getBlocks()) {
+            checkpoint.putLong(requestedBytes.get(block.getStartAddress()));
+        }
+    }
+
+    @Override
+    public void readState(Checkpoint checkpoint, Memory memory) throws IOException {
+        requestedBytes.clear();
+        totalRequestedBytes = 0;
+        totalAllocatedBytes = 0;
+        for (Block block : memory.getBlocks()) {
+            long bytes = checkpoint.getLong();
+            requestedBytes.put(block.getStartAddress(), bytes);
+            totalRequestedBytes += bytes;
+            totalAllocatedBytes += block.getSize();
+        }
+    }
+
+    @Override
+    public boolean hasInternalFragmentation() {
+        return true;
+    }
+
+    @Override
+    public double getInternalFragmentation() {
+        if (totalAllocatedBytes == 0) {
+            return 0;
+        }
+        return 1.0 - (double) totalRequestedBytes / totalAllocatedBytes;
+    }
+
+    @Override
+    public String getStrategy() {
+        return "Buddy";
+    }
+
+    /**
+     * Return the order of the smallest power of two that holds the given bytes.
+     * @param bytes the requested bytes.
+     * @return the order.
+     */
+    private static int getOrder(long bytes) {
+        if (bytes <= 1) {
+            return 0;
+        }
+        return 64 - Long.numberOfLeadingZeros(bytes - 1);
+    }
+
+    /**
+     * Free an address range by splitting it into the largest aligned power of two blocks.
+     * @param startAddress of the range.
+     * @param endAddress of the range.
+     * @return the number of buddies merged.
+     */
+    private int freeRange(long startAddress, long endAddress) {
+        int merges = 0;
+        while (startAddress <= endAddress) {
+            int order = startAddress == 0 ? MAX_ORDER : Long.numberOfTrailingZeros(startAddress);
+            while (order > 0 && (1L << order) - 1 > endAddress - startAddress) {
+                order--;
+            }
+            merges += freeBlock(order, startAddress);
+            startAddress += 1L << order;
+        }
+        return merges;
+    }
+
+    /**
+     * Free an aligned block, merging it with its buddy as long as the buddy is free.
+     * @param order of the block.
+     * @param startAddress of the block.
+     * @return the number of buddies merged.
+     */
+    private int freeBlock(int order, long startAddress) {
+        int merges = 0;
+        while (order < MAX_ORDER) {
+            long buddyAddress = startAddress ^ (1L << order);
+            if (!isFree(order, buddyAddress)) {
+                break;
+            }
+            removeFree(order, buddyAddress);
+            startAddress = Math.min(startAddress, buddyAddress);
+            order++;
+            merges++;
+        }
+        addFree(order, startAddress);
+        return merges;
+    }
+
+    private boolean isFree(int order, long startAddress) {
+        long position = freePositions.get(startAddress);
+        return position != LongLongMap.MISSING && (position & 63) == order;
+    }
+
+    private void addFree(int order, long startAddress) {
+        int count = freeCounts[order]++;
+        if (count == freeLists[order].length) {
+            freeLists[order] = Arrays.copyOf(freeLists[order], count * 2);
+        }
+        siftUp(order, count, startAddress);
+        freeOrders |= 1L << order;
+    }
+
+    private long removeFree(int order, long startAddress) {
+        int position = (int) (freePositions.remove(startAddress) >>> 6);
+        int count = --freeCounts[order];
+        if (position < count) {
+
+            // Move the last address of the heap into the hole, up or down as needed.
+            long last = freeLists[order][count];
+            if (position > 0 && freeLists[order][(position - 1) / 2] > last) {
+                siftUp(order, position, last);
+            } else {
+                siftDown(order, position, last);
+            }
+        }
+        if (count == 0) {
+            freeOrders &= ~(1L << order);
+        }
+        return startAddress;
+    }
+
+    /**
+     * Place an address in the heap of an order, moving it up from the given position.
+     * @param order of the heap.
+     * @param position where the address would go.
+     * @param startAddress the address.
+     */
+    private void siftUp(int order, int position, long startAddress) {
+        long[] heap = freeLists[order];
+        while (position > 0) {
+            int parent = (position - 1) / 2;
+            if (heap[parent] <= startAddress) {
+                break;
+            }
+            setFree(order, position, heap[parent]);
+            position = parent;
+        }
+        setFree(order, position, startAddress);
+    }
+
+    /**
+     * Place an address in the heap of an order, moving it down from the given position.
+     * @param order of the heap.
+     * @param position where the address would go.
+     * @param startAddress the address.
+     */
+    private void siftDown(int order, int position, long startAddress) {
+        long[] heap = freeLists[order];
+        int count = freeCounts[order];
+        while (true) {
+            int child = 2 * position + 1;
+            if (child >= count) {
+                break;
+            }
+            if (child + 1 < count && heap[child + 1] < heap[child]) {
+                child++;
+            }
+            if (startAddress <= heap[child]) {
+                break;
+            }
+            setFree(order, position, heap[child]);
+            position = child;
+        }
+        setFree(order, position, startAddress);
+    }
+
+    private void setFree(int order, int position, long startAddress) {
+        freeLists[order][position] = startAddress;
+        freePositions.put(startAddress, (long) position << 6 | order);
+    }
+
+}
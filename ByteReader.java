@@ -0,0 +1,20 @@
+import java.io.Closeable;
+import java.io.IOException;
+
+public interface ByteReader extends Closeable {
+
+    public static final int END_OF_FILE = -1;
+
+    /**
+     * Read the next byte.
+     * @return the byte, or END_OF_FILE.
+     * @throws IOException if the input cannot be read.
+     */
+    public int read() throws IOException;
+
+    /**
+     * Step back over the byte that was just read.
+     */
+    public void unread();
+
+}
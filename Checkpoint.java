@@ -0,0 +1,228 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+
+public class Checkpoint implements Closeable {
+
+    // Header: magic, version, the number of executed instructions and the number of strategies.
+    // Then, for each strategy, its name and the state of its executor, memory and allocation strategy.
+    // Numbers are zigzag varints and text is a varint length followed by one byte per (ASCII) character.
+    public static final int MAGIC = 0x4D434B50;
+    public static final int VERSION = 4;
+
+    private FileChannel channel;
+    private ByteBuffer buffer;
+    private MappedFileReader file;
+
+    private Checkpoint(FileChannel channel) {
+        this.channel = channel;
+        buffer = ByteBuffer.allocateDirect(1 << 16);
+    }
+
+    private Checkpoint(MappedFileReader file) {
+        this.file = file;
+    }
+
+    /**
+     * Write the state of every executor after an instruction, replacing the previous checkpoint.
+     * The checkpoint is written to a temporary file first, so an interrupted write keeps the previous one.
+     * @param path of the checkpoint file.
+     * @param instructionNumber the number of the last executed instruction.
+     * @param commandExecutors the executors for each allocation strategy.
+     * @throws IOException if the checkpoint cannot be written.
+     */
+    public static void save(String path, int instructionNumber, ArrayList<CommandExecutor> commandExecutors) throws IOException {
+        Path temporaryPath = Paths.get(path + ".tmp");
+        try (Checkpoint checkpoint = new Checkpoint(FileChannel.open(temporaryPath, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING))) {
+            checkpoint.buffer.putInt(MAGIC).put((byte) VERSION);
+            checkpoint.putInt(instructionNumber);
+            checkpoint.putInt(commandExecutors.size());
+            for (CommandExecutor commandExecutor : commandExecutors) {
+                checkpoint.putChars(commandExecutor.getStrategy());
+                commandExecutor.writeState(checkpoint);
+            }
+        }
+        Files.move(temporaryPath, Paths.get(path), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Restore the state of every executor from a checkpoint, mapping the file instead of reading it.
+     * @param path of the checkpoint file.
+     * @param commandExecutors the executors for each allocation strategy, in the order they were saved.
+     * @return the number of the last instruction executed before the checkpoint.
+     * @throws IOException if the file cannot be read, is not a checkpoint, or is for other strategies.
+     */
+    public static int load(String path, ArrayList<CommandExecutor> commandExecutors) throws IOException {
+        try (Checkpoint checkpoint = new Checkpoint(new MappedFileReader(path))) {
+            if (checkpoint.file.getFileSize() < 5 || checkpoint.readMagic() != MAGIC) {
+                throw new IOException("Not a checkpoint: " + path);
+            }
+            int version = checkpoint.readByte();
+            if (version != VERSION) {
+                throw new IOException("Unsupported checkpoint version " + version + ": " + path);
+            }
+            int instructionNumber = checkpoint.getInt();
+            if (checkpoint.getInt() != commandExecutors.size()) {
+                throw new IOException("The checkpoint is for a different number of strategies: " + path);
+            }
+            for (CommandExecutor commandExecutor : commandExecutors) {
+                String strategy = checkpoint.getChars().toString();
+                if (!strategy.equals(commandExecutor.getStrategy())) {
+                    throw new IOException("The checkpoint is for " + strategy + ", not " + commandExecutor.getStrategy());
+                }
+                commandExecutor.readState(checkpoint);
+            }
+            return instructionNumber;
+        }
+    }
+
+    /**
+     * Write a number.
+     * @param value the number.
+     * @throws IOException if the checkpoint cannot be written.
+     */
+    public void putInt(int value) throws IOException {
+        if (buffer.remaining() < 5) {
+            flush();
+        }
+        int zigzag = (value << 1) ^ (value >> 31);
+        while ((zigzag & ~0x7F) != 0) {
+            buffer.put((byte) ((zigzag & 0x7F) | 0x80));
+            zigzag >>>= 7;
+        }
+        buffer.put((byte) zigzag);
+    }
+
+    /**
+     * Read a number.
+     * @return the number.
+     * @throws IOException if the checkpoint cannot be read.
+     */
+    public int getInt() throws IOException {
+        int zigzag = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = readByte();
+            if (shift > 28) {
+                throw new IOException("Corrupt checkpoint");
+            }
+            zigzag |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return (zigzag >>> 1) ^ -(zigzag & 1);
+    }
+
+    /**
+     * Write a 64-bit number, e.g. an address or a size.
+     * @param value the number.
+     * @throws IOException if the checkpoint cannot be written.
+     */
+    public void putLong(long value) throws IOException {
+        if (buffer.remaining() < 10) {
+            flush();
+        }
+        long zigzag = (value << 1) ^ (value >> 63);
+        while ((zigzag & ~0x7FL) != 0) {
+            buffer.put((byte) ((zigzag & 0x7F) | 0x80));
+            zigzag >>>= 7;
+        }
+        buffer.put((byte) zigzag);
+    }
+
+    /**
+     * Read a 64-bit number.
+     * @return the number.
+     * @throws IOException if the checkpoint cannot be read.
+     */
+    public long getLong() throws IOException {
+        long zigzag = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = readByte();
+            if (shift > 63) {
+                throw new IOException("Corrupt checkpoint");
+            }
+            zigzag |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return (zigzag >>> 1) ^ -(zigzag & 1);
+    }
+
+    /**
+     * Write ASCII text.
+     * @param text the text.
+     * @throws IOException if the checkpoint cannot be written.
+     */
+    public void putChars(CharSequence text) throws IOException {
+        putInt(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            if (!buffer.hasRemaining()) {
+                flush();
+            }
+            buffer.put((byte) text.charAt(i));
+        }
+    }
+
+    /**
+     * Read ASCII text.
+     * @return the text, in a builder that can be appended to.
+     * @throws IOException if the checkpoint cannot be read.
+     */
+    public StringBuilder getChars() throws IOException {
+        int length = getInt();
+        StringBuilder text = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            text.append((char) readByte());
+        }
+        return text;
+    }
+
+    /**
+     * Write the rest of the checkpoint and close the file.
+     * @throws IOException if the file cannot be written.
+     */
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            flush();
+            channel.close();
+        } else {
+            file.close();
+        }
+    }
+
+    private int readMagic() throws IOException {
+        int value = 0;
+        for (int i = 0; i < 4; i++) {
+            value = (value << 8) | readByte();
+        }
+        return value;
+    }
+
+    private int readByte() throws IOException {
+        int b = file.read();
+        if (b == MappedFileReader.END_OF_FILE) {
+            throw new IOException("Corrupt checkpoint");
+        }
+        return b;
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+}
@@ -1,11 +1,14 @@
-import java.util.ArrayList;
+import java.io.IOException;
 
 public class CommandExecutor {
 
     private Memory memory;
-    private ArrayList<Integer> nonAlocatedIds;
-    private ArrayList<String> intermediateOutputs;
-    private String errors;
+    private IntSet nonAlocatedIds;
+    private int intermediateOutputCount;
+    private IntermediateOutputFile intermediateOutputFile;
+    private TextLog errors;
+    private CompactionPolicy compactionPolicy;
+    private TextLog compactions;
 
     /**
      * Constructor.
@@ -13,36 +16,57 @@ public class CommandExecutor {
      */
     public CommandExecutor(Memory memory) {
         this.memory = memory;
-        nonAlocatedIds = new ArrayList<>();
-        intermediateOutputs = new ArrayList<>();
-        errors = "";
+        nonAlocatedIds = new IntSet();
+        errors = new TextLog();
     }
 
     /**
      * Execute the "allocate" instruction.
      * @param instructionNumber the instruction's line number.
-     * @param param1 first parameter of instruction.
-     * @param param2 second parameter of instruction.
+     * @param id of the block to allocate.
+     * @param bytes of the block to allocate.
      */
-    public void allocate(int instructionNumber, String param1, String param2) {
-        int id = Integer.valueOf(param1);
-        int bytes = Integer.valueOf(param2);
-
+    public void allocate(int instructionNumber, int id, long bytes) {
         if (!memory.allocateBlock(id, bytes)) {
-            errors += "A;" + Integer.toString(instructionNumber) + ";";
-            errors += Integer.toString(memory.getMaxAvailableBlock()) + "\n";
-            nonAlocatedIds.add(id);
+            allocationFailed(instructionNumber, id, bytes);
+        }
+    }
+
+    /**
+     * Execute a run of consecutive "allocate" instructions, one at a time.
+     * @param firstInstructionNumber the line number of the first instruction.
+     * @param ids of the blocks to allocate.
+     * @param sizes of the blocks to allocate.
+     * @param count the number of instructions.
+     */
+    public void allocateBatch(int firstInstructionNumber, int[] ids, long[] sizes, int count) {
+        for (int i = 0; i < count; i++) {
+            allocate(firstInstructionNumber + i, ids[i], sizes[i]);
+        }
+    }
+
+    private void allocationFailed(int instructionNumber, int id, long bytes) {
+
+        // If enabled, compact memory to make room for the block and try again.
+        if (compactionPolicy != null && bytes <= memory.getTotalFreeMemory()
+                && memory.compact(bytes, compactionPolicy)) {
+            logCompaction("A;", instructionNumber);
+            if (memory.allocateBlock(id, bytes)) {
+                return;
+            }
         }
+
+        errors.append("A;").append(instructionNumber).append(';');
+        errors.append(memory.getMaxAvailableBlock()).append('\n');
+        nonAlocatedIds.add(id);
     }
 
     /**
      * Execute the "deallocate" instruction.
      * @param instructionNumber the instruction's line number.
-     * @param param1 first parameter of instruction.
+     * @param id of the block to deallocate.
      */
-    public void deallocate(int instructionNumber, String param1) {
-        int id = Integer.valueOf(param1);
-
+    public void deallocate(int instructionNumber, int id) {
         if (!memory.deallocateBlock(id)) {
             String errorReason;
             if (nonAlocatedIds.contains(id)) {
@@ -50,42 +74,114 @@ public class CommandExecutor {
             } else {
                 errorReason = "0";
             }
-            errors += "D;" + Integer.toString(instructionNumber) + ";" + errorReason + "\n";
+            errors.append("D;").append(instructionNumber).append(';').append(errorReason).append('\n');
+        }
+    }
+
+    /**
+     * Execute the "reallocate" instruction.
+     * A failed reallocation leaves the block unchanged, and is reported like a failed allocation.
+     * @param instructionNumber the instruction's line number.
+     * @param id of the block to reallocate.
+     * @param bytes the new size of the block.
+     */
+    public void reallocate(int instructionNumber, int id, long bytes) {
+        boolean reallocated = memory.reallocateBlock(id, bytes);
+
+        // If enabled, compact memory to make room for the growth of the block and try again.
+        if (!reallocated && compactionPolicy != null && memory.compactForReallocation(id, bytes, compactionPolicy)) {
+            logCompaction("R;", instructionNumber);
+            reallocated = memory.reallocateBlock(id, bytes);
+        }
+
+        if (!reallocated) {
+            errors.append("R;").append(instructionNumber).append(';');
+            errors.append(memory.getMaxAvailableBlock()).append('\n');
+            if (memory.getStartAddress(id) < 0) {
+                nonAlocatedIds.add(id);
+            }
         }
     }
 
     /**
      * Execute the "compact" instruction.
+     * @param instructionNumber the instruction's line number.
      */
-    public void compact() {
+    public void compact(int instructionNumber) {
         memory.compact();
+        logCompaction("C;", instructionNumber);
     }
 
     /**
-     * Add intermediate output for strategy.
-     * @param intermediateOutput the output.
+     * Compact memory with the given policy before reporting a failed allocation.
+     * @param compactionPolicy the policy, or null to report failed allocations right away.
      */
-    public void intermediateOutput(String intermediateOutput) {
-        intermediateOutputs.add(intermediateOutput);
+    public void setCompactionPolicy(CompactionPolicy compactionPolicy) {
+        this.compactionPolicy = compactionPolicy;
     }
 
     /**
-     * Return the intermediate outputs for the strategy.
-     * @return an ArrayList of the outputs.
+     * Record the blocks and bytes moved by each compaction.
      */
-    public ArrayList<String> getIntermediateOutputs() {
-        ArrayList<String> copyIntermediateOutputs = new ArrayList<>();
-        for (String outputs : intermediateOutputs) {
-            copyIntermediateOutputs.add(outputs);
+    public void reportCompactions() {
+        compactions = new TextLog();
+    }
+
+    /**
+     * Return the compactions of the execution, one per line with the instruction, blocks moved and bytes moved.
+     * @return the compactions, or null if they are not reported.
+     */
+    public CharSequence getCompactions() {
+        return compactions;
+    }
+
+    private void logCompaction(String command, int instructionNumber) {
+        if (compactions != null) {
+            compactions.append(command).append(instructionNumber).append(';');
+            compactions.append(memory.getMovedBlocks()).append(';').append(memory.getMovedBytes()).append('\n');
         }
-        return copyIntermediateOutputs;
+    }
+
+    /**
+     * Count an intermediate output for strategy.
+     * @return the number of the intermediate output, starting at 1.
+     */
+    public int intermediateOutput() {
+        intermediateOutputCount++;
+        return intermediateOutputCount;
+    }
+
+    /**
+     * Keep the intermediate outputs for the strategy in a file until they are merged.
+     * @param intermediateOutputFile the file, or null to write them straight to the output files.
+     */
+    public void setIntermediateOutputFile(IntermediateOutputFile intermediateOutputFile) {
+        this.intermediateOutputFile = intermediateOutputFile;
+    }
+
+    /**
+     * Return the file with the intermediate outputs for the strategy.
+     * @return the file, or null if they are written straight to the output files.
+     */
+    public IntermediateOutputFile getIntermediateOutputFile() {
+        return intermediateOutputFile;
+    }
+
+    /**
+     * Return the current output of the executor in constant time, see Memory.snapshot.
+     * @return the snapshot.
+     */
+    public MemorySnapshot snapshot() {
+        MemorySnapshot snapshot = memory.snapshot();
+        snapshot.setLogs(errors.snapshot(), compactions == null ? null : compactions.snapshot());
+        return snapshot;
     }
 
     /**
      * Return the errors from the execution. 
-     * @return the errors.
+     * @return the errors, without copying them.
      */
-    public String getErrors() {
+    public CharSequence getErrors() {
         return errors;
     }
 
@@ -97,6 +193,56 @@ public class CommandExecutor {
         return memory.getStrategy();
     }
 
+    /**
+     * Write the state of the executor and its memory.
+     * @param checkpoint where the state is written.
+     * @throws IOException if the checkpoint cannot be written.
+     */
+    public void writeState(Checkpoint checkpoint) throws IOException {
+        checkpoint.putInt(intermediateOutputCount);
+        int[] ids = nonAlocatedIds.toArray();
+        checkpoint.putInt(ids.length);
+        for (int id : ids) {
+            checkpoint.putInt(id);
+        }
+        checkpoint.putChars(errors);
+        checkpoint.putInt(compactions == null ? 0 : 1);
+        if (compactions != null) {
+            checkpoint.putChars(compactions);
+        }
+        memory.writeState(checkpoint);
+    }
+
+    /**
+     * Replace the state of the executor and its memory with the one written by writeState.
+     * Compactions are only restored if they are reported.
+     * @param checkpoint where the state is read from.
+     * @throws IOException if the checkpoint cannot be read.
+     */
+    public void readState(Checkpoint checkpoint) throws IOException {
+        intermediateOutputCount = checkpoint.getInt();
+        nonAlocatedIds = new IntSet();
+        for (int i = checkpoint.getInt(); i > 0; i--) {
+            nonAlocatedIds.add(checkpoint.getInt());
+        }
+        errors = new TextLog().append(checkpoint.getChars());
+        if (checkpoint.getInt() == 1) {
+            StringBuilder savedCompactions = checkpoint.getChars();
+            if (compactions != null) {
+                compactions = new TextLog().append(savedCompactions);
+            }
+        }
+        memory.readState(checkpoint);
+    }
+
+    /**
+     * Return the instrumentation of the executor's memory.
+     * @return the metrics, or null if instrumentation is off.
+     */
+    public Metrics getMetrics() {
+        return memory.getMetrics();
+    }
+
     /**
      * Return the main memory object used by the executor.
      * @return the memory object.
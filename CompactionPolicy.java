@@ -0,0 +1,30 @@
+public enum CompactionPolicy {
+
+    // Move all allocated blocks towards the lowest memory address (0).
+    FULL,
+
+    // Move blocks towards address 0, starting from the lowest, until a free block of the requested size exists.
+    SLIDE,
+
+    // Move the run of adjacent blocks with the fewest bytes that leaves a free block of the requested size.
+    MINIMAL;
+
+    /**
+     * Return the compaction policy with the given name.
+     * @param name of the policy (full, slide or minimal).
+     * @return the compaction policy.
+     */
+    public static CompactionPolicy fromName(String name) {
+        switch (name) {
+            case "full":
+                return FULL;
+            case "slide":
+                return SLIDE;
+            case "minimal":
+                return MINIMAL;
+            default:
+                throw new IllegalArgumentException("Unknown compaction policy: " + name);
+        }
+    }
+
+}
@@ -0,0 +1,251 @@
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+public class ConcurrentMemory {
+
+    private static final int ID_STRIPES = 64;
+
+    /**
+     * A part of the capacity with its own memory, allocation strategy and lock.
+     */
+    private static class Arena {
+        private Memory memory;
+        private long startAddress;
+        private ReentrantLock lock;
+
+        private Arena(Memory memory, long startAddress) {
+            this.memory = memory;
+            this.startAddress = startAddress;
+            lock = new ReentrantLock();
+        }
+    }
+
+    /**
+     * The arenas of the allocated block ids in one stripe, used while holding the stripe's lock.
+     */
+    private static class Stripe {
+        private IntMap<Arena> arenasById = new IntMap<>();
+    }
+
+    private Arena[] arenas;
+    // The arena of each allocated block id, split into stripes that are their own locks.
+    private Stripe[] stripes;
+    private AtomicInteger nextHomeArena;
+    private ThreadLocal<Integer> homeArena;
+
+    /**
+     * Constructor, splits the capacity into arenas of (about) the same size.
+     * @param capacity of the memory.
+     * @param arenaCount the number of arenas, usually the number of allocating threads.
+     * @param allocationStrategies creates the allocation strategy of each arena.
+     */
+    public ConcurrentMemory(long capacity, int arenaCount, Supplier<AllocationStrategy> allocationStrategies) {
+        arenas = new Arena[arenaCount];
+        long startAddress = 0;
+        for (int i = 0; i < arenaCount; i++) {
+            long arenaCapacity = capacity / arenaCount + (i < capacity % arenaCount ? 1 : 0);
+            Memory memory = new Memory(allocationStrategies.get());
+            memory.setCapacity(arenaCapacity);
+            arenas[i] = new Arena(memory, startAddress);
+            startAddress += arenaCapacity;
+        }
+        stripes = new Stripe[ID_STRIPES];
+        for (int i = 0; i < ID_STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+
+        // Threads are given home arenas in turn, so they rarely contend for the same lock.
+        nextHomeArena = new AtomicInteger();
+        homeArena = ThreadLocal.withInitial(() -> Math.floorMod(nextHomeArena.getAndIncrement(), arenaCount));
+    }
+
+    /**
+     * Allocate a block with given id and bytes.
+     * The home arena of the calling thread is tried first, then the other arenas.
+     * Ids must be unique among the allocated blocks.
+     * @param id of the block.
+     * @param bytes of the block.
+     * @return true if allocated, otherwise false.
+     */
+    public boolean allocateBlock(int id, long bytes) {
+        int home = homeArena.get();
+
+        // First try the arenas that no other thread is using.
+        for (int i = 0; i < arenas.length; i++) {
+            Arena arena = arenas[(home + i) % arenas.length];
+            if (arena.lock.tryLock()) {
+                try {
+                    if (allocateBlock(arena, id, bytes)) {
+                        return true;
+                    }
+                } finally {
+                    arena.lock.unlock();
+                }
+            }
+        }
+
+        // Then wait for each arena in turn.
+        for (int i = 0; i < arenas.length; i++) {
+            Arena arena = arenas[(home + i) % arenas.length];
+            arena.lock.lock();
+            try {
+                if (allocateBlock(arena, id, bytes)) {
+                    return true;
+                }
+            } finally {
+                arena.lock.unlock();
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Deallocate the block with the given id, from any thread.
+     * @param id of the block.
+     * @return true if the block has been removed, otherwise false.
+     */
+    public boolean deallocateBlock(int id) {
+        Stripe stripe = getStripe(id);
+        Arena arena;
+        synchronized (stripe) {
+            arena = stripe.arenasById.remove(id);
+        }
+        if (arena == null) {
+            return false;
+        }
+        arena.lock.lock();
+        try {
+            return arena.memory.deallocateBlock(id);
+        } finally {
+            arena.lock.unlock();
+        }
+    }
+
+    /**
+     * Return the start address of the block with the given id.
+     * @param id of the block.
+     * @return the start address, or -1 if no block with the id is allocated.
+     */
+    public long getStartAddress(int id) {
+        Stripe stripe = getStripe(id);
+        Arena arena;
+        synchronized (stripe) {
+            arena = stripe.arenasById.get(id);
+        }
+        if (arena == null) {
+            return -1;
+        }
+        arena.lock.lock();
+        try {
+            long startAddress = arena.memory.getStartAddress(id);
+            return startAddress < 0 ? -1 : arena.startAddress + startAddress;
+        } finally {
+            arena.lock.unlock();
+        }
+    }
+
+    /**
+     * Back the arenas with storage, each with the part of it that starts at the arena's start address.
+     * Blocks then get views of their bytes, see Memory.setStorage.
+     * @param storage at least as big as the capacity.
+     */
+    public void setStorage(ByteBuffer storage) {
+        for (Arena arena : arenas) {
+            arena.lock.lock();
+            try {
+                arena.memory.setStorage(storage.slice((int) arena.startAddress, (int) arena.memory.getCapacity()));
+            } finally {
+                arena.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Return the view of the bytes of the block with the given id, see Block.getBuffer.
+     * @param id of the block.
+     * @return the view, or null if no block with the id is allocated or there is no storage.
+     */
+    public ByteBuffer getBuffer(int id) {
+        Stripe stripe = getStripe(id);
+        Arena arena;
+        synchronized (stripe) {
+            arena = stripe.arenasById.get(id);
+        }
+        if (arena == null) {
+            return null;
+        }
+        arena.lock.lock();
+        try {
+            Block block = arena.memory.getBlock(id);
+            return block == null ? null : block.getBuffer();
+        } finally {
+            arena.lock.unlock();
+        }
+    }
+
+    /**
+     * Compact each arena in turn.
+     */
+    public void compact() {
+        for (Arena arena : arenas) {
+            arena.lock.lock();
+            try {
+                arena.memory.compact();
+            } finally {
+                arena.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Return the size of total free memory, over all arenas.
+     * @return total free memory.
+     */
+    public long getTotalFreeMemory() {
+        long totalFreeMemory = 0;
+        for (Arena arena : arenas) {
+            arena.lock.lock();
+            try {
+                totalFreeMemory += arena.memory.getTotalFreeMemory();
+            } finally {
+                arena.lock.unlock();
+            }
+        }
+        return totalFreeMemory;
+    }
+
+    /**
+     * Return the number of arenas.
+     * @return the number of arenas.
+     */
+    public int getArenaCount() {
+        return arenas.length;
+    }
+
+    /**
+     * Return the memory of an arena. It must only be used while no thread allocates or deallocates.
+     * @param index of the arena.
+     * @return the memory of the arena.
+     */
+    public Memory getArena(int index) {
+        return arenas[index].memory;
+    }
+
+    private boolean allocateBlock(Arena arena, int id, long bytes) {
+        if (!arena.memory.allocateBlock(id, bytes)) {
+            return false;
+        }
+        Stripe stripe = getStripe(id);
+        synchronized (stripe) {
+            stripe.arenasById.put(id, arena);
+        }
+        return true;
+    }
+
+    private Stripe getStripe(int id) {
+        return stripes[IntMap.hash(id) & (ID_STRIPES - 1)];
+    }
+
+}
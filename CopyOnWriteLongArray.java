@@ -0,0 +1,93 @@
+import java.util.Arrays;
+
+public class CopyOnWriteLongArray {
+
+    // The array is split into chunks, and a chunk shared with a snapshot is only copied when it is first written.
+    private static final int CHUNK_BITS = 10;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+
+    private long[][] chunks;
+    // Version in which each chunk, and the chunk table, were last copied. They can be written in the same version.
+    private int[] chunkVersions;
+    private int chunksVersion;
+    private int version;
+
+    /**
+     * Constructor.
+     * @param capacity the initial number of elements.
+     */
+    public CopyOnWriteLongArray(int capacity) {
+        chunks = new long[0][];
+        chunkVersions = new int[0];
+        ensureCapacity(capacity);
+    }
+
+    private CopyOnWriteLongArray(long[][] chunks) {
+        this.chunks = chunks;
+    }
+
+    /**
+     * Return the number of elements the array can hold.
+     * @return the capacity.
+     */
+    public int capacity() {
+        return chunks.length << CHUNK_BITS;
+    }
+
+    /**
+     * Grow the array to hold at least the given number of elements.
+     * @param capacity the number of elements.
+     */
+    public void ensureCapacity(int capacity) {
+        int chunkCount = (capacity + CHUNK_SIZE - 1) >>> CHUNK_BITS;
+        if (chunkCount <= chunks.length) {
+            return;
+        }
+        int oldCount = chunks.length;
+        chunkCount = Math.max(chunkCount, oldCount * 2);
+        chunks = Arrays.copyOf(chunks, chunkCount);
+        chunkVersions = Arrays.copyOf(chunkVersions, chunkCount);
+        for (int chunk = oldCount; chunk < chunkCount; chunk++) {
+            chunks[chunk] = new long[CHUNK_SIZE];
+            chunkVersions[chunk] = version;
+        }
+        chunksVersion = version;
+    }
+
+    /**
+     * Return an element.
+     * @param index of the element.
+     * @return the element.
+     */
+    public long get(int index) {
+        return chunks[index >>> CHUNK_BITS][index & (CHUNK_SIZE - 1)];
+    }
+
+    /**
+     * Set an element, first copying its chunk if a snapshot shares it.
+     * @param index of the element.
+     * @param value the element.
+     */
+    public void set(int index, long value) {
+        int chunk = index >>> CHUNK_BITS;
+        if (chunkVersions[chunk] != version) {
+            if (chunksVersion != version) {
+                chunks = chunks.clone();
+                chunksVersion = version;
+            }
+            chunks[chunk] = chunks[chunk].clone();
+            chunkVersions[chunk] = version;
+        }
+        chunks[chunk][index & (CHUNK_SIZE - 1)] = value;
+    }
+
+    /**
+     * Return a read-only copy of the array in constant time, which later changes to the array do not affect.
+     * @return the copy.
+     */
+    public CopyOnWriteLongArray snapshot() {
+        version++;
+        return new CopyOnWriteLongArray(chunks);
+    }
+
+}
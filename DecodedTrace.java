@@ -0,0 +1,85 @@
+import java.io.IOException;
+import java.util.Arrays;
+
+public class DecodedTrace {
+
+    private long capacity;
+    private int size;
+    private byte[] commands;
+    private int[] ids;
+    private long[] bytes;
+
+    /**
+     * Constructor, decodes all remaining instructions of a trace.
+     * @param trace the trace to decode.
+     * @throws IOException if the trace cannot be read.
+     */
+    public DecodedTrace(TraceReader trace) throws IOException {
+        capacity = trace.getCapacity();
+        commands = new byte[1024];
+        ids = new int[1024];
+        bytes = new long[1024];
+        while (trace.next()) {
+            if (size == commands.length) {
+                int length = size * 2;
+                commands = Arrays.copyOf(commands, length);
+                ids = Arrays.copyOf(ids, length);
+                bytes = Arrays.copyOf(bytes, length);
+            }
+            commands[size] = (byte) trace.getCommand();
+            ids[size] = trace.getId();
+            bytes[size] = trace.getBytes();
+            size++;
+        }
+    }
+
+    /**
+     * Return the number of instructions in the trace.
+     * @return the number of instructions.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Return a new reader over the decoded instructions.
+     * Readers are independent, so each can be used by a different thread.
+     * @return the reader.
+     */
+    public TraceReader newReader() {
+        return new TraceReader() {
+            private int position = -1;
+
+            @Override
+            public long getCapacity() {
+                return capacity;
+            }
+
+            @Override
+            public boolean next() {
+                position++;
+                return position < size;
+            }
+
+            @Override
+            public int getCommand() {
+                return commands[position];
+            }
+
+            @Override
+            public int getId() {
+                return ids[position];
+            }
+
+            @Override
+            public long getBytes() {
+                return bytes[position];
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+}
@@ -0,0 +1,258 @@
+import java.util.Arrays;
+
+public abstract class ExtentTree {
+
+    // AVL tree whose nodes are extent handles, with the links of each node in arrays indexed by its handle.
+    // The key of an extent must not change while it is in the tree, except as allowed by refresh.
+    protected Extents extents;
+    protected int root;
+    protected int[] left;
+    protected int[] right;
+    private int[] height;
+    private int size;
+
+    /**
+     * Constructor.
+     * @param extents the extents the handles refer to.
+     */
+    protected ExtentTree(Extents extents) {
+        this.extents = extents;
+        root = Extents.NONE;
+        left = new int[0];
+        right = new int[0];
+        height = new int[0];
+    }
+
+    /**
+     * Compare the keys of two extents.
+     * @param extent1 the first extent.
+     * @param extent2 the second extent.
+     * @return a negative number, zero or a positive number if the first key is lower, equal or higher.
+     */
+    protected abstract int compare(int extent1, int extent2);
+
+    /**
+     * Recompute what a node stores about its subtree, after its children have changed.
+     * @param node the node.
+     */
+    protected void update(int node) {
+        height[node] = Math.max(height(left[node]), height(right[node])) + 1;
+    }
+
+    /**
+     * Add an extent to the tree.
+     * @param extent the extent.
+     */
+    public void add(int extent) {
+        if (extent >= left.length) {
+            grow(Math.max(extent + 1, left.length * 2));
+        }
+        left[extent] = Extents.NONE;
+        right[extent] = Extents.NONE;
+        update(extent);
+        root = insert(root, extent);
+        size++;
+    }
+
+    /**
+     * Remove an extent from the tree.
+     * @param extent the extent, which must be in the tree.
+     */
+    public void remove(int extent) {
+        root = delete(root, extent);
+        size--;
+    }
+
+    /**
+     * Recompute what the nodes on the path to an extent store about their subtrees, after the extent changed
+     * without changing its order among the other extents of the tree.
+     * @param extent the extent, which must be in the tree.
+     */
+    public void refresh(int extent) {
+        refresh(root, extent);
+    }
+
+    /**
+     * Remove all extents from the tree.
+     */
+    public void clear() {
+        root = Extents.NONE;
+        size = 0;
+    }
+
+    /**
+     * Return the number of extents in the tree.
+     * @return the number of extents.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Check if the tree has no extents.
+     * @return true if it is empty, otherwise false.
+     */
+    public boolean isEmpty() {
+        return root == Extents.NONE;
+    }
+
+    /**
+     * Return the extent with the highest key.
+     * @return the extent, or NONE if the tree is empty.
+     */
+    public int last() {
+        int node = root;
+        if (node == Extents.NONE) {
+            return Extents.NONE;
+        }
+        while (right[node] != Extents.NONE) {
+            node = right[node];
+        }
+        return node;
+    }
+
+    /**
+     * Return the extent with the next higher key than an extent in the tree.
+     * @param extent the extent.
+     * @return the next extent, or NONE if there is none.
+     */
+    public int higher(int extent) {
+        int higher = Extents.NONE;
+        int node = root;
+        while (node != Extents.NONE) {
+            if (compare(extent, node) < 0) {
+                higher = node;
+                node = left[node];
+            } else {
+                node = right[node];
+            }
+        }
+        return higher;
+    }
+
+    /**
+     * Return the extent with the next lower key than an extent in the tree.
+     * @param extent the extent.
+     * @return the previous extent, or NONE if there is none.
+     */
+    public int lower(int extent) {
+        int lower = Extents.NONE;
+        int node = root;
+        while (node != Extents.NONE) {
+            if (compare(extent, node) > 0) {
+                lower = node;
+                node = right[node];
+            } else {
+                node = left[node];
+            }
+        }
+        return lower;
+    }
+
+    protected int height(int node) {
+        return node == Extents.NONE ? 0 : height[node];
+    }
+
+    private void refresh(int node, int extent) {
+        if (node != extent) {
+            refresh(compare(extent, node) < 0 ? left[node] : right[node], extent);
+        }
+        update(node);
+    }
+
+    private int insert(int node, int extent) {
+        if (node == Extents.NONE) {
+            return extent;
+        }
+        if (compare(extent, node) < 0) {
+            left[node] = insert(left[node], extent);
+        } else {
+            right[node] = insert(right[node], extent);
+        }
+        return balance(node);
+    }
+
+    private int delete(int node, int extent) {
+        if (node == extent) {
+            if (left[node] == Extents.NONE) {
+                return right[node];
+            }
+            if (right[node] == Extents.NONE) {
+                return left[node];
+            }
+
+            // Replace the node with the lowest node of its right subtree.
+            int successor = right[node];
+            while (left[successor] != Extents.NONE) {
+                successor = left[successor];
+            }
+            right[successor] = deleteLowest(right[node]);
+            left[successor] = left[node];
+            return balance(successor);
+        }
+        if (compare(extent, node) < 0) {
+            left[node] = delete(left[node], extent);
+        } else {
+            right[node] = delete(right[node], extent);
+        }
+        return balance(node);
+    }
+
+    private int deleteLowest(int node) {
+        if (left[node] == Extents.NONE) {
+            return right[node];
+        }
+        left[node] = deleteLowest(left[node]);
+        return balance(node);
+    }
+
+    private int rotateLeft(int node) {
+        int pivot = right[node];
+        right[node] = left[pivot];
+        left[pivot] = node;
+        update(node);
+        update(pivot);
+        return pivot;
+    }
+
+    private int rotateRight(int node) {
+        int pivot = left[node];
+        left[node] = right[pivot];
+        right[pivot] = node;
+        update(node);
+        update(pivot);
+        return pivot;
+    }
+
+    /**
+     * Rotate a node if its subtrees' heights differ by two, and return the root of its subtree.
+     */
+    private int balance(int node) {
+        int balance = height(left[node]) - height(right[node]);
+        if (balance > 1) {
+            if (height(left[left[node]]) < height(right[left[node]])) {
+                left[node] = rotateLeft(left[node]);
+            }
+            return rotateRight(node);
+        }
+        if (balance < -1) {
+            if (height(right[right[node]]) < height(left[right[node]])) {
+                right[node] = rotateRight(right[node]);
+            }
+            return rotateLeft(node);
+        }
+        update(node);
+        return node;
+    }
+
+    /**
+     * Grow the node arrays to hold the given number of handles.
+     * @param capacity the number of handles.
+     */
+    protected void grow(int capacity) {
+        left = Arrays.copyOf(left, capacity);
+        right = Arrays.copyOf(right, capacity);
+        height = Arrays.copyOf(height, capacity);
+    }
+
+}
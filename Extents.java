@@ -0,0 +1,336 @@
+import java.util.Arrays;
+
+public class Extents {
+
+    public static final int NONE = -1;
+
+    // States of an extent, kept in its free flag.
+    private static final int ALLOCATED = 0;
+    private static final int FREE = 1;
+    private static final int CACHED = 2;
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    // Fields of each extent, indexed by its handle. Those read by snapshots are copied on write.
+    private CopyOnWriteLongArray startAddresses;
+    private CopyOnWriteLongArray endAddresses;
+    private CopyOnWriteIntArray ids;
+    private CopyOnWriteIntArray freeFlags;
+    private CopyOnWriteIntArray nextPhysical;
+    private CopyOnWriteIntArray nextAllocated;
+    private int[] previousPhysical;
+    private int[] previousAllocated;
+    private int[] nextSameId;
+    // Changed whenever the fields of an extent change or its handle is reused, so views can tell they are stale.
+    private int[] versions;
+    // Handles of removed extents, reused before new ones.
+    private int[] releasedHandles;
+    private int releasedCount;
+    private int handleCount;
+
+    /**
+     * Constructor.
+     */
+    public Extents() {
+        startAddresses = new CopyOnWriteLongArray(INITIAL_CAPACITY);
+        endAddresses = new CopyOnWriteLongArray(INITIAL_CAPACITY);
+        ids = new CopyOnWriteIntArray(INITIAL_CAPACITY);
+        freeFlags = new CopyOnWriteIntArray(INITIAL_CAPACITY);
+        nextPhysical = new CopyOnWriteIntArray(INITIAL_CAPACITY);
+        nextAllocated = new CopyOnWriteIntArray(INITIAL_CAPACITY);
+        previousPhysical = new int[INITIAL_CAPACITY];
+        previousAllocated = new int[INITIAL_CAPACITY];
+        nextSameId = new int[INITIAL_CAPACITY];
+        versions = new int[INITIAL_CAPACITY];
+        releasedHandles = new int[INITIAL_CAPACITY];
+    }
+
+    private Extents(Extents extents) {
+        startAddresses = extents.startAddresses.snapshot();
+        endAddresses = extents.endAddresses.snapshot();
+        ids = extents.ids.snapshot();
+        freeFlags = extents.freeFlags.snapshot();
+        nextPhysical = extents.nextPhysical.snapshot();
+        nextAllocated = extents.nextAllocated.snapshot();
+    }
+
+    /**
+     * Return a read-only copy of the extents in constant time, which later changes do not affect.
+     * Only the fields and the physical and allocation order links can be read from the copy.
+     * @return the copy.
+     */
+    public Extents snapshot() {
+        return new Extents(this);
+    }
+
+    /**
+     * Add an extent, unlinked.
+     * @param id of the allocated block, ignored if the extent is free.
+     * @param startAddress of the extent.
+     * @param endAddress of the extent.
+     * @param free true if the extent is a free block, false if it is an allocated block.
+     * @return the handle of the extent.
+     */
+    public int add(int id, long startAddress, long endAddress, boolean free) {
+        int handle;
+        if (releasedCount > 0) {
+            handle = releasedHandles[--releasedCount];
+        } else {
+            handle = handleCount++;
+            if (handle == previousPhysical.length) {
+                grow(handle * 2);
+            }
+        }
+        startAddresses.set(handle, startAddress);
+        endAddresses.set(handle, endAddress);
+        ids.set(handle, id);
+        freeFlags.set(handle, free ? FREE : ALLOCATED);
+        nextPhysical.set(handle, NONE);
+        nextAllocated.set(handle, NONE);
+        previousPhysical[handle] = NONE;
+        previousAllocated[handle] = NONE;
+        nextSameId[handle] = NONE;
+        versions[handle]++;
+        return handle;
+    }
+
+    /**
+     * Remove an extent, which must already be unlinked, so its handle can be reused.
+     * @param handle of the extent.
+     */
+    public void remove(int handle) {
+        if (releasedCount == releasedHandles.length) {
+            releasedHandles = Arrays.copyOf(releasedHandles, releasedCount * 2);
+        }
+        releasedHandles[releasedCount++] = handle;
+        versions[handle]++;
+    }
+
+    /**
+     * Remove all extents.
+     */
+    public void clear() {
+        for (int handle = 0; handle < handleCount; handle++) {
+            versions[handle]++;
+        }
+        handleCount = 0;
+        releasedCount = 0;
+    }
+
+    /**
+     * Return the number of handles in use or released, every handle is lower.
+     * @return the handle count.
+     */
+    public int getHandleCount() {
+        return handleCount;
+    }
+
+    /**
+     * Return the start address of an extent.
+     * @param handle of the extent.
+     * @return the start address.
+     */
+    public long getStartAddress(int handle) {
+        return startAddresses.get(handle);
+    }
+
+    /**
+     * Set the start address of an extent, which must not be in a tree keyed by it.
+     * @param handle of the extent.
+     * @param startAddress the start address.
+     */
+    public void setStartAddress(int handle, long startAddress) {
+        startAddresses.set(handle, startAddress);
+        versions[handle]++;
+    }
+
+    /**
+     * Return the end address of an extent.
+     * @param handle of the extent.
+     * @return the end address.
+     */
+    public long getEndAddress(int handle) {
+        return endAddresses.get(handle);
+    }
+
+    /**
+     * Set the end address of an extent, which must not be in a tree keyed by it.
+     * @param handle of the extent.
+     * @param endAddress the end address.
+     */
+    public void setEndAddress(int handle, long endAddress) {
+        endAddresses.set(handle, endAddress);
+        versions[handle]++;
+    }
+
+    /**
+     * Return the size of an extent.
+     * @param handle of the extent.
+     * @return the size.
+     */
+    public long getSize(int handle) {
+        return endAddresses.get(handle) - startAddresses.get(handle) + 1;
+    }
+
+    /**
+     * Return the id of an allocated block.
+     * @param handle of the block.
+     * @return the id.
+     */
+    public int getId(int handle) {
+        return ids.get(handle);
+    }
+
+    /**
+     * Set the id of an allocated block.
+     * @param handle of the block.
+     * @param id the id.
+     */
+    public void setId(int handle, int id) {
+        ids.set(handle, id);
+        versions[handle]++;
+    }
+
+    /**
+     * Check if an extent is a free block.
+     * @param handle of the extent.
+     * @return true if it is free, false if it is allocated or cached.
+     */
+    public boolean isFree(int handle) {
+        return freeFlags.get(handle) == FREE;
+    }
+
+    /**
+     * Mark an extent as a free block or an allocated block.
+     * @param handle of the extent.
+     * @param free true if the extent is free, false if it is allocated.
+     */
+    public void setFree(int handle, boolean free) {
+        freeFlags.set(handle, free ? FREE : ALLOCATED);
+        versions[handle]++;
+    }
+
+    /**
+     * Check if an extent is a deallocated block kept in a quick list, which is neither free nor allocated.
+     * @param handle of the extent.
+     * @return true if it is cached, otherwise false.
+     */
+    public boolean isCached(int handle) {
+        return freeFlags.get(handle) == CACHED;
+    }
+
+    /**
+     * Mark a deallocated block as cached in a quick list.
+     * @param handle of the block.
+     */
+    public void setCached(int handle) {
+        freeFlags.set(handle, CACHED);
+        versions[handle]++;
+    }
+
+    /**
+     * Return the version of an extent, which changes whenever its addresses, id or state change,
+     * or it is removed. Not available on snapshots.
+     * @param handle of the extent.
+     * @return the version.
+     */
+    public int getVersion(int handle) {
+        return versions[handle];
+    }
+
+    /**
+     * Return the extent after an extent in address order.
+     * @param handle of the extent.
+     * @return the next extent, or NONE.
+     */
+    public int getNextPhysical(int handle) {
+        return nextPhysical.get(handle);
+    }
+
+    /**
+     * Return the extent before an extent in address order.
+     * @param handle of the extent.
+     * @return the previous extent, or NONE.
+     */
+    public int getPreviousPhysical(int handle) {
+        return previousPhysical[handle];
+    }
+
+    /**
+     * Return the block allocated after a block.
+     * @param handle of the block.
+     * @return the next block, or NONE.
+     */
+    public int getNextAllocated(int handle) {
+        return nextAllocated.get(handle);
+    }
+
+    /**
+     * Return the block allocated before a block.
+     * @param handle of the block.
+     * @return the previous block, or NONE.
+     */
+    public int getPreviousAllocated(int handle) {
+        return previousAllocated[handle];
+    }
+
+    /**
+     * Return the next block allocated with the same id as a block.
+     * @param handle of the block.
+     * @return the next block with the id, or NONE.
+     */
+    public int getNextSameId(int handle) {
+        return nextSameId[handle];
+    }
+
+    /**
+     * Set the next block allocated with the same id as a block.
+     * @param handle of the block.
+     * @param next the next block with the id, or NONE.
+     */
+    public void setNextSameId(int handle, int next) {
+        nextSameId[handle] = next;
+    }
+
+    /**
+     * Link two extents in address order.
+     * @param previous the lower extent, or NONE if next becomes the first.
+     * @param next the higher extent, or NONE if previous becomes the last.
+     */
+    public void linkPhysical(int previous, int next) {
+        if (previous != NONE) {
+            nextPhysical.set(previous, next);
+        }
+        if (next != NONE) {
+            previousPhysical[next] = previous;
+        }
+    }
+
+    /**
+     * Link two allocated blocks in allocation order.
+     * @param previous the earlier block, or NONE if next becomes the first.
+     * @param next the later block, or NONE if previous becomes the last.
+     */
+    public void linkAllocated(int previous, int next) {
+        if (previous != NONE) {
+            nextAllocated.set(previous, next);
+        }
+        if (next != NONE) {
+            previousAllocated[next] = previous;
+        }
+    }
+
+    private void grow(int capacity) {
+        startAddresses.ensureCapacity(capacity);
+        endAddresses.ensureCapacity(capacity);
+        ids.ensureCapacity(capacity);
+        freeFlags.ensureCapacity(capacity);
+        nextPhysical.ensureCapacity(capacity);
+        nextAllocated.ensureCapacity(capacity);
+        previousPhysical = Arrays.copyOf(previousPhysical, capacity);
+        previousAllocated = Arrays.copyOf(previousAllocated, capacity);
+        nextSameId = Arrays.copyOf(nextSameId, capacity);
+        versions = Arrays.copyOf(versions, capacity);
+    }
+
+}
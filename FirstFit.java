@@ -1,14 +1,19 @@
 public class FirstFit implements AllocationStrategy {
 
     @Override
-    public boolean allocateBlock(int id, int bytes, Memory memory) {
+    public boolean allocateBlock(int id, long bytes, Memory memory) {
+
+        // If memory is empty alocate the block at the lowest address.
+        if (memory.isEmpty()) {
+            memory.addBlock(id, 0, bytes - 1);
+            return true;
+        }
 
         // Allocate the first fitting free block in memory.
-        for (Block freeBlock : memory.getFreeBlocks()) {
-            if (freeBlock.getSize() >= bytes) {
-                memory.addBlock(new Block(id), freeBlock.getStartAddress(), freeBlock.getStartAddress() + bytes - 1);
-                return true;
-            }
+        long startAddress = memory.findFirstFit(bytes);
+        if (startAddress >= 0) {
+            memory.addBlock(id, startAddress, startAddress + bytes - 1);
+            return true;
         }
 
         // If no free block found return false.
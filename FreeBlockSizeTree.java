@@ -0,0 +1,53 @@
+public class FreeBlockSizeTree extends ExtentTree {
+
+    // Comparisons made so far, counted as free blocks examined.
+    private long comparisons;
+
+    /**
+     * Constructor, for a tree of free blocks keyed by size and then by start address.
+     * @param extents the extents the handles refer to.
+     */
+    public FreeBlockSizeTree(Extents extents) {
+        super(extents);
+    }
+
+    @Override
+    protected int compare(int extent1, int extent2) {
+        comparisons++;
+        long size1 = extents.getSize(extent1);
+        long size2 = extents.getSize(extent2);
+        if (size1 != size2) {
+            return Long.compare(size1, size2);
+        }
+        return Long.compare(extents.getStartAddress(extent1), extents.getStartAddress(extent2));
+    }
+
+    /**
+     * Return the smallest free block that can hold the given bytes, with the lowest address among those of its size.
+     * @param bytes the minimum size of the free block.
+     * @return the free block, or NONE if no free block is big enough.
+     */
+    public int ceiling(long bytes) {
+        int ceilingBlock = Extents.NONE;
+        int node = root;
+        while (node != Extents.NONE) {
+            comparisons++;
+            if (extents.getSize(node) >= bytes) {
+                ceilingBlock = node;
+                node = left[node];
+            } else {
+                node = right[node];
+            }
+        }
+        return ceilingBlock;
+    }
+
+    /**
+     * Return the number of comparisons made so far.
+     * @return the number of comparisons.
+     */
+    public long getComparisons() {
+        return comparisons;
+    }
+
+}
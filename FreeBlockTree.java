@@ -0,0 +1,104 @@
+import java.util.Arrays;
+
+public class FreeBlockTree extends ExtentTree {
+
+    // Size of the largest free block in the subtree of each node.
+    private long[] maxSize;
+    // Nodes visited by first fit searches so far.
+    private long visitedNodes;
+
+    /**
+     * Constructor, for a tree of free blocks keyed by start address.
+     * @param extents the extents the handles refer to.
+     */
+    public FreeBlockTree(Extents extents) {
+        super(extents);
+        maxSize = new long[0];
+    }
+
+    @Override
+    protected int compare(int extent1, int extent2) {
+        return Long.compare(extents.getStartAddress(extent1), extents.getStartAddress(extent2));
+    }
+
+    @Override
+    protected void update(int node) {
+        super.update(node);
+        maxSize[node] = Math.max(extents.getSize(node), Math.max(maxSize(left[node]), maxSize(right[node])));
+    }
+
+    @Override
+    protected void grow(int capacity) {
+        super.grow(capacity);
+        maxSize = Arrays.copyOf(maxSize, capacity);
+    }
+
+    /**
+     * Return the free block with the highest start address that is lower or equal to the given address.
+     * @param address the address.
+     * @return the free block, or NONE if there is none.
+     */
+    public int floor(long address) {
+        int floorBlock = Extents.NONE;
+        int node = root;
+        while (node != Extents.NONE) {
+            if (extents.getStartAddress(node) <= address) {
+                floorBlock = node;
+                node = right[node];
+            } else {
+                node = left[node];
+            }
+        }
+        return floorBlock;
+    }
+
+    /**
+     * Return the size of the largest free block in the tree.
+     * @return the size, or 0 if the tree is empty.
+     */
+    public long getMaxSize() {
+        return maxSize(root);
+    }
+
+    /**
+     * Return the number of nodes visited by first fit searches so far.
+     * @return the number of visited nodes.
+     */
+    public long getVisitedNodes() {
+        return visitedNodes;
+    }
+
+    /**
+     * Return the free block with the lowest start address, from the given address on, that can hold the given bytes.
+     * @param startAddress the lowest start address of the free block.
+     * @param bytes the minimum size of the free block.
+     * @return the free block, or NONE if no free block is big enough.
+     */
+    public int findFirstFit(long startAddress, long bytes) {
+        return findFirstFit(root, startAddress, bytes);
+    }
+
+    private int findFirstFit(int node, long startAddress, long bytes) {
+        while (node != Extents.NONE && maxSize[node] >= bytes) {
+            visitedNodes++;
+            if (extents.getStartAddress(node) >= startAddress) {
+
+                // Prefer the lower addresses of the left subtree, then this node.
+                int leftBlock = findFirstFit(left[node], startAddress, bytes);
+                if (leftBlock != Extents.NONE) {
+                    return leftBlock;
+                }
+                if (extents.getSize(node) >= bytes) {
+                    return node;
+                }
+            }
+            node = right[node];
+        }
+        return Extents.NONE;
+    }
+
+    private long maxSize(int node) {
+        return node == Extents.NONE ? 0 : maxSize[node];
+    }
+
+}
@@ -0,0 +1,109 @@
+public class Histogram {
+
+    // Values up to 2 * SUB_BUCKET_COUNT are counted exactly, larger ones within 1 / SUB_BUCKET_COUNT of their value.
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKET_COUNT = (64 - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT;
+
+    private long[] counts;
+    private long count;
+    private long total;
+    private long min;
+    private long max;
+
+    /**
+     * Constructor, for non-negative values up to Long.MAX_VALUE.
+     */
+    public Histogram() {
+        counts = new long[BUCKET_COUNT];
+        min = Long.MAX_VALUE;
+    }
+
+    /**
+     * Record a value.
+     * @param value the non-negative value.
+     */
+    public void record(long value) {
+        counts[getBucket(value)]++;
+        count++;
+        total += value;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    /**
+     * Return the number of recorded values.
+     * @return the number of values.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Return the sum of the recorded values.
+     * @return the sum.
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * Return the smallest recorded value.
+     * @return the smallest value, or 0 if none was recorded.
+     */
+    public long getMin() {
+        return count == 0 ? 0 : min;
+    }
+
+    /**
+     * Return the largest recorded value.
+     * @return the largest value, or 0 if none was recorded.
+     */
+    public long getMax() {
+        return max;
+    }
+
+    /**
+     * Return the mean of the recorded values.
+     * @return the mean, or 0 if none was recorded.
+     */
+    public double getMean() {
+        return count == 0 ? 0 : (double) total / count;
+    }
+
+    /**
+     * Return the value below which the given percentage of the recorded values fall.
+     * The value is the highest one of its bucket, and never more than the largest recorded value.
+     * @param percentile between 0 and 100.
+     * @return the value, or 0 if none was recorded.
+     */
+    public long getValueAtPercentile(double percentile) {
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+            seen += counts[bucket];
+            if (seen >= rank) {
+                return Math.min(max, getHighestValue(bucket));
+            }
+        }
+        return 0;
+    }
+
+    private static int getBucket(long value) {
+        if (value < 2 * SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKET_COUNT + (int) (value >>> shift) - SUB_BUCKET_COUNT;
+    }
+
+    private static long getHighestValue(int bucket) {
+        if (bucket < 2 * SUB_BUCKET_COUNT) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKET_COUNT - 1;
+        long subBucket = bucket % SUB_BUCKET_COUNT + SUB_BUCKET_COUNT;
+        return ((subBucket + 1) << shift) - 1;
+    }
+
+}
@@ -2,15 +2,20 @@ import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.io.Writer;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
-import java.util.Scanner;
+import java.util.Locale;
 
 public class IOFile {
 
     private String filePath;
+    // Writes the intermediate outputs in the background, created by the first one.
+    private OutputWriter outputWriter;
 
     /**
      * Constructor.
@@ -21,104 +26,275 @@ public class IOFile {
     }
 
     /**
-     * Read the input file, set capacity to memory objects, and return array with instructions.
-     * @param memory1 memory used for executing specific strategy.
-     * @param memory2 memory used for executing specific strategy.
-     * @param memory3 memory used for executing specific strategy.
-     * @return the instructions to execute for each strategy.
+     * Open the input file for streaming and set its capacity to the memory objects.
+     * @param memories the memories used for executing each strategy.
+     * @param binary true to read the binary trace (.trace) instead of the text input (.in).
+     * @return a reader over the instructions, or null if the file cannot be read.
      */
-    public ArrayList<String> readInputFile(Memory memory1, Memory memory2, Memory memory3) {
-        ArrayList<String> instructions = new ArrayList<>();
+    public TraceReader openInputFile(ArrayList<Memory> memories, boolean binary) {
         try {
-            File file = new File(filePath + ".in");
-            Scanner scan = new Scanner(file);
-            int capacity = Integer.valueOf(scan.nextLine());
-            memory1.setCapacity(capacity);
-            memory2.setCapacity(capacity);
-            memory3.setCapacity(capacity);
-            while (scan.hasNext()) {
-                instructions.add(scan.nextLine());
+            TraceReader reader;
+            if (binary) {
+                reader = new BinaryTraceReader(filePath + ".trace");
+            } else {
+                reader = new TextTraceReader(filePath + ".in");
             }
-            scan.close();
+            for (Memory memory : memories) {
+                memory.setCapacity(reader.getCapacity());
+            }
+            return reader;
         } catch (IOException e) {
             e.printStackTrace();
         }
-        return instructions;
+        return null;
     }
 
     /**
-     * Return the intermediate or final output for a specific strategy.
-     * @param commandExecutor for specific strategy.
-     * @return a string with the (intermediate or final) output.
+     * Write the intermediate or final output for a specific strategy.
+     * @param memory a snapshot of the strategy's executor.
+     * @param output where the (intermediate or final) output is written.
+     * @throws IOException if the output cannot be written.
      */
-    public String getOutputForStrategy(CommandExecutor commandExecutor) {
-        Memory memory = commandExecutor.getMemory();
-        String errors = commandExecutor.getErrors();
-        String strategy = commandExecutor.getStrategy();
+    public void writeOutputForStrategy(MemorySnapshot memory, Appendable output) throws IOException {
+        TextLog errors = memory.getErrors();
 
-        String output = strategy + "\n";
+        output.append(memory.getStrategy()).append('\n');
 
-        output += "Allocated blocks\n";
-        if (memory.getBlocks().isEmpty()) {
-            output += "None" + "\n";
+        output.append("Allocated blocks\n");
+        if (memory.isEmpty()) {
+            output.append("None\n");
         }
         for (Block block : memory.getBlocks()) {
-            output += block.getId() + ";" + block.getStartAddress() + ";" + block.getEndAddress() + "\n";
+            output.append(Integer.toString(block.getId())).append(';');
+            output.append(Long.toString(block.getStartAddress())).append(';');
+            output.append(Long.toString(block.getEndAddress())).append('\n');
         }
 
-        output += "Free blocks\n";
-        if (memory.getFreeBlocks().isEmpty()) {
-            output += "None" + "\n";
+        output.append("Free blocks\n");
+        if (memory.getFreeBlockCount() == 0) {
+            output.append("None\n");
         }
         for (Block block : memory.getFreeBlocks()) {
-            output += block.getStartAddress() + ";" + block.getEndAddress() + "\n";
+            output.append(Long.toString(block.getStartAddress())).append(';');
+            output.append(Long.toString(block.getEndAddress())).append('\n');
         }
 
-        output += "Fragmentation\n";
+        output.append("Fragmentation\n");
         BigDecimal fragmentation = BigDecimal.valueOf(memory.getFragmentation());
         fragmentation = fragmentation.setScale(6, RoundingMode.HALF_UP);
-        output += fragmentation.toString() + "\n";
+        output.append(fragmentation.toString()).append('\n');
+
+        if (memory.hasInternalFragmentation()) {
+            output.append("Internal fragmentation\n");
+            BigDecimal internalFragmentation = BigDecimal.valueOf(memory.getInternalFragmentation());
+            internalFragmentation = internalFragmentation.setScale(6, RoundingMode.HALF_UP);
+            output.append(internalFragmentation.toString()).append('\n');
+        }
+
+        if (memory.getInPlaceReallocations() > 0 || memory.getRelocations() > 0) {
+            output.append("Reallocations\n");
+            output.append(Long.toString(memory.getInPlaceReallocations())).append(';');
+            output.append(Long.toString(memory.getRelocations())).append('\n');
+        }
 
-        if (errors.isEmpty()) {
-            output += "Errors\n" + "None" + "\n" + "\n";
+        TextLog compactions = memory.getCompactions();
+        if (compactions != null) {
+            output.append("Compactions\n");
+            if (compactions.length() == 0) {
+                output.append("None\n");
+            }
+            compactions.writeTo(output);
+        }
+
+        if (errors.length() == 0) {
+            output.append("Errors\nNone\n\n");
         } else {
-            output += "Errors\n" + errors + "\n";
+            output.append("Errors\n");
+            errors.writeTo(output);
+            output.append('\n');
+        }
+    }
+
+    /**
+     * Write the next intermediate output of a strategy, either straight to its
+     * intermediate output file or to the strategy's own temporary file.
+     * Only a snapshot is taken here, the output is written by the background writer thread.
+     * @param commandExecutor for specific strategy.
+     */
+    public void writeIntermediateOutput(CommandExecutor commandExecutor) {
+        int intermediateNumber = commandExecutor.intermediateOutput();
+        IntermediateOutputFile intermediateOutputs = commandExecutor.getIntermediateOutputFile();
+        MemorySnapshot snapshot = commandExecutor.snapshot();
+        getOutputWriter().submit(() -> {
+            try {
+                if (intermediateOutputs != null) {
+                    writeOutputForStrategy(snapshot, intermediateOutputs);
+                    intermediateOutputs.endOutput(intermediateNumber);
+                } else {
+                    Writer printer = new BufferedWriter(new FileWriter(filePath + ".out" + Integer.toString(intermediateNumber), true));
+                    writeOutputForStrategy(snapshot, printer);
+                    printer.close();
+                }
+            } catch (IOException e) {
+                e. printStackTrace (); 
+            }
+        });
+    }
+
+    private synchronized OutputWriter getOutputWriter() {
+        if (outputWriter == null) {
+            outputWriter = new OutputWriter();
+        }
+        return outputWriter;
+    }
+
+    /**
+     * Create a temporary file for the intermediate outputs of a strategy, next to the output files.
+     * @return the intermediate output file.
+     * @throws IOException if the file cannot be created.
+     */
+    public IntermediateOutputFile createIntermediateOutputFile() throws IOException {
+        return new IntermediateOutputFile(new File(filePath).getAbsoluteFile().getParentFile());
+    }
+
+    /**
+     * Write a checkpoint of every strategy to fileName.checkpoint, replacing the previous one.
+     * @param commandExecutors the executors for each allocation strategy.
+     * @param instructionNumber the number of the last executed instruction.
+     */
+    public void writeCheckpoint(ArrayList<CommandExecutor> commandExecutors, int instructionNumber) {
+        try {
+            Checkpoint.save(filePath + ".checkpoint", instructionNumber, commandExecutors);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Restore every strategy from a checkpoint.
+     * @param commandExecutors the executors for each allocation strategy.
+     * @param fileName the name of the checkpoint file (without the .checkpoint).
+     * @return the number of the last instruction executed before the checkpoint, or -1 if it cannot be read.
+     */
+    public int readCheckpoint(ArrayList<CommandExecutor> commandExecutors, String fileName) {
+        try {
+            return Checkpoint.load(System.getProperty("user.dir") + "/" + fileName + ".checkpoint", commandExecutors);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return -1;
+    }
+
+    /**
+     * Write the metrics of each strategy as JSON to fileName.metrics.json, next to the output file.
+     * Latencies are in nanoseconds.
+     * @param commandExecutors the executors for each allocation strategy.
+     */
+    public void writeMetricsFile(ArrayList<CommandExecutor> commandExecutors) {
+        String[] commands = {"A", "D", "C", "O", "R"};
+        try (Writer printer = new BufferedWriter(new FileWriter(filePath + ".metrics.json"))) {
+            printer.append("{\"strategies\": [");
+            for (int i = 0; i < commandExecutors.size(); i++) {
+                Metrics metrics = commandExecutors.get(i).getMetrics();
+                printer.append(i == 0 ? "\n" : ",\n");
+                printer.append("  {\"strategy\": \"").append(commandExecutors.get(i).getStrategy()).append("\",\n");
+                printer.append("   \"latency\": {");
+                for (int command = TraceReader.ALLOCATE; command <= TraceReader.REALLOCATE; command++) {
+                    printer.append(command == TraceReader.ALLOCATE ? "" : ", ");
+                    printer.append('"').append(commands[command - 1]).append("\": ");
+                    writeHistogram(metrics.getLatencies(command), printer);
+                }
+                printer.append("},\n");
+                printer.append("   \"examinedFreeBlocks\": ");
+                writeHistogram(metrics.getExaminedFreeBlocks(), printer);
+                printer.append(",\n");
+                printer.append("   \"splits\": ").append(Long.toString(metrics.getSplits()));
+                printer.append(", \"coalesces\": ").append(Long.toString(metrics.getCoalesces()));
+                printer.append(", \"strategySplits\": ").append(Long.toString(metrics.getStrategySplits()));
+                printer.append(", \"strategyCoalesces\": ").append(Long.toString(metrics.getStrategyCoalesces())).append(",\n");
+                printer.append("   \"compactions\": ").append(Long.toString(metrics.getCompactions()));
+                printer.append(", \"movedBlocks\": ").append(Long.toString(metrics.getMovedBlocks()));
+                printer.append(", \"movedBytes\": ").append(Long.toString(metrics.getMovedBytes())).append(",\n");
+                printer.append("   \"quickListHits\": ").append(Long.toString(metrics.getQuickListHits()));
+                printer.append(", \"quickListMisses\": ").append(Long.toString(metrics.getQuickListMisses()));
+                printer.append(", \"quickListEvictions\": ").append(Long.toString(metrics.getQuickListEvictions()));
+                printer.append(", \"quickListFlushes\": ").append(Long.toString(metrics.getQuickListFlushes())).append('}');
+            }
+            printer.append("\n]}\n");
+        } catch (IOException e) {
+            e.printStackTrace();
         }
-    
-        return output;
+    }
+
+    private static void writeHistogram(Histogram histogram, Writer printer) throws IOException {
+        printer.append("{\"count\": ").append(Long.toString(histogram.getCount()));
+        printer.append(", \"min\": ").append(Long.toString(histogram.getMin()));
+        printer.append(", \"mean\": ").append(String.format(Locale.ROOT, "%.1f", histogram.getMean()));
+        printer.append(", \"p50\": ").append(Long.toString(histogram.getValueAtPercentile(50)));
+        printer.append(", \"p90\": ").append(Long.toString(histogram.getValueAtPercentile(90)));
+        printer.append(", \"p99\": ").append(Long.toString(histogram.getValueAtPercentile(99)));
+        printer.append(", \"p999\": ").append(Long.toString(histogram.getValueAtPercentile(99.9)));
+        printer.append(", \"max\": ").append(Long.toString(histogram.getMax())).append('}');
     }
 
     /**
      * Write to the intermediate and final output files.
+     * Intermediate outputs kept in temporary files are merged in the order of the executors.
      * @param commandExecutors the executors for each allocation strategy.
      */
     public void writeOutputFile(ArrayList<CommandExecutor> commandExecutors) {
-        for (CommandExecutor commandExecutor : commandExecutors) {
 
-            // Write in the intermediate output files.
-            int intermediateNumber = 1;
-            for (String intermediateOutput : commandExecutor.getIntermediateOutputs()) {
+        // Wait for the intermediate outputs still being written.
+        synchronized (this) {
+            if (outputWriter != null) {
+                outputWriter.close();
+                outputWriter = null;
+            }
+        }
+
+        // Write in the intermediate output files.
+        int firstIntermediateNumber = Integer.MAX_VALUE;
+        int lastIntermediateNumber = 0;
+        for (CommandExecutor commandExecutor : commandExecutors) {
+            IntermediateOutputFile intermediateOutputs = commandExecutor.getIntermediateOutputFile();
+            if (intermediateOutputs != null && intermediateOutputs.getOutputCount() > 0) {
+                firstIntermediateNumber = Math.min(firstIntermediateNumber, intermediateOutputs.getFirstOutputNumber());
+                lastIntermediateNumber = Math.max(lastIntermediateNumber,
+                        intermediateOutputs.getFirstOutputNumber() + intermediateOutputs.getOutputCount() - 1);
+            }
+        }
+        for (int intermediateNumber = firstIntermediateNumber; intermediateNumber <= lastIntermediateNumber; intermediateNumber++) {
+            try (FileChannel file = FileChannel.open(Paths.get(filePath + ".out" + Integer.toString(intermediateNumber)),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                for (CommandExecutor commandExecutor : commandExecutors) {
+                    IntermediateOutputFile intermediateOutputs = commandExecutor.getIntermediateOutputFile();
+                    if (intermediateOutputs != null && intermediateOutputs.hasOutput(intermediateNumber)) {
+                        intermediateOutputs.transferOutput(intermediateNumber, file);
+                    }
+                }
+            } catch (IOException e) {
+                e. printStackTrace (); 
+            }
+        }
+        for (CommandExecutor commandExecutor : commandExecutors) {
+            if (commandExecutor.getIntermediateOutputFile() != null) {
                 try {
-                    FileWriter file = new FileWriter(filePath + ".out" + Integer.toString(intermediateNumber), true);
-                    PrintWriter printer = new PrintWriter(new BufferedWriter(file));
-                    printer.print(intermediateOutput);
-                    printer.close();
+                    commandExecutor.getIntermediateOutputFile().delete();
                 } catch (IOException e) {
                     e. printStackTrace (); 
                 }
-                intermediateNumber++;
             }
+        }
 
-            // Write in the final output files.
-            try {
-                FileWriter file = new FileWriter(filePath + ".out", true);
-                PrintWriter printer = new PrintWriter(new BufferedWriter(file));
-                printer.print(getOutputForStrategy(commandExecutor));
-                printer.close();
-            } catch (IOException e) {
-                e. printStackTrace (); 
+        // Write in the final output files.
+        try {
+            Writer printer = new BufferedWriter(new FileWriter(filePath + ".out", true));
+            for (CommandExecutor commandExecutor : commandExecutors) {
+                writeOutputForStrategy(commandExecutor.snapshot(), printer);
             }
-
+            printer.close();
+        } catch (IOException e) {
+            e. printStackTrace (); 
         }
     }
 
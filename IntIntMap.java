@@ -0,0 +1,131 @@
+import java.util.Arrays;
+
+public class IntIntMap {
+
+    public static final int MISSING = -1;
+
+    private int[] keys;
+    private int[] values;
+    private boolean[] used;
+    private int size;
+    private int mask;
+
+    /**
+     * Constructor.
+     */
+    public IntIntMap() {
+        keys = new int[16];
+        values = new int[16];
+        used = new boolean[16];
+        mask = 15;
+    }
+
+    /**
+     * Return the value for the given key.
+     * @param key the key.
+     * @return the value, or MISSING if the key is not in the map.
+     */
+    public int get(int key) {
+        int slot = IntMap.hash(key) & mask;
+        while (used[slot]) {
+            if (keys[slot] == key) {
+                return values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return MISSING;
+    }
+
+    /**
+     * Set the value for the given key.
+     * @param key the key.
+     * @param value the value.
+     */
+    public void put(int key, int value) {
+        int slot = IntMap.hash(key) & mask;
+        while (used[slot]) {
+            if (keys[slot] == key) {
+                values[slot] = value;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        used[slot] = true;
+        size++;
+        if (size * 4 > keys.length * 3) {
+            resize(keys.length * 2);
+        }
+    }
+
+    /**
+     * Remove the given key from the map.
+     * @param key the key.
+     * @return the removed value, or MISSING if the key was not in the map.
+     */
+    public int remove(int key) {
+        int slot = IntMap.hash(key) & mask;
+        while (used[slot]) {
+            if (keys[slot] == key) {
+                int value = values[slot];
+                deleteSlot(slot);
+                size--;
+                return value;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return MISSING;
+    }
+
+    /**
+     * Return the number of keys in the map.
+     * @return the size.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Remove all keys from the map.
+     */
+    public void clear() {
+        Arrays.fill(used, false);
+        size = 0;
+    }
+
+    /**
+     * Empty a slot, moving later entries of its probe sequence back so no lookup misses them.
+     * @param slot the slot to empty.
+     */
+    private void deleteSlot(int slot) {
+        int next = (slot + 1) & mask;
+        while (used[next]) {
+            int home = IntMap.hash(keys[next]) & mask;
+            if (((next - home) & mask) >= ((next - slot) & mask)) {
+                keys[slot] = keys[next];
+                values[slot] = values[next];
+                slot = next;
+            }
+            next = (next + 1) & mask;
+        }
+        used[slot] = false;
+    }
+
+    private void resize(int capacity) {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        boolean[] oldUsed = used;
+        keys = new int[capacity];
+        values = new int[capacity];
+        used = new boolean[capacity];
+        mask = capacity - 1;
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldUsed[i]) {
+                put(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,92 @@
+public class IntSet {
+
+    private int[] keys;
+    private boolean[] used;
+    private int size;
+    private int mask;
+
+    /**
+     * Constructor.
+     */
+    public IntSet() {
+        keys = new int[16];
+        used = new boolean[16];
+        mask = 15;
+    }
+
+    /**
+     * Check if the set contains the given key.
+     * @param key the key.
+     * @return true if the key is in the set, otherwise false.
+     */
+    public boolean contains(int key) {
+        int slot = IntMap.hash(key) & mask;
+        while (used[slot]) {
+            if (keys[slot] == key) {
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * Add the given key to the set.
+     * @param key the key.
+     * @return true if the key was added, false if it was already in the set.
+     */
+    public boolean add(int key) {
+        int slot = IntMap.hash(key) & mask;
+        while (used[slot]) {
+            if (keys[slot] == key) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        used[slot] = true;
+        size++;
+        if (size * 4 > keys.length * 3) {
+            resize(keys.length * 2);
+        }
+        return true;
+    }
+
+    /**
+     * Return the number of keys in the set.
+     * @return the size.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Return the keys of the set, in no particular order.
+     * @return a new array with the keys.
+     */
+    public int[] toArray() {
+        int[] array = new int[size];
+        int index = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (used[i]) {
+                array[index++] = keys[i];
+            }
+        }
+        return array;
+    }
+
+    private void resize(int capacity) {
+        int[] oldKeys = keys;
+        boolean[] oldUsed = used;
+        keys = new int[capacity];
+        used = new boolean[capacity];
+        mask = capacity - 1;
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldUsed[i]) {
+                add(oldKeys[i]);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,126 @@
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+public class IntermediateOutputFile extends Writer {
+
+    private File file;
+    private Writer writer;
+    // The output is ASCII, so every character written is one byte.
+    private long length;
+    private long[] endOffsets;
+    private int count;
+    // Number of the first intermediate output in the file, which is not 1 after resuming from a checkpoint.
+    private int firstNumber;
+    private FileChannel source;
+
+    /**
+     * Constructor, creates a temporary file for the intermediate outputs of one strategy.
+     * @param directory where the temporary file is created.
+     * @throws IOException if the file cannot be created.
+     */
+    public IntermediateOutputFile(File directory) throws IOException {
+        file = File.createTempFile("intermediate", ".out", directory);
+        file.deleteOnExit();
+        writer = new BufferedWriter(new FileWriter(file));
+        endOffsets = new long[16];
+    }
+
+    /**
+     * Mark the end of the current intermediate output.
+     * @param number of the intermediate output.
+     */
+    public void endOutput(int number) {
+        if (count == 0) {
+            firstNumber = number;
+        }
+        if (count == endOffsets.length) {
+            endOffsets = Arrays.copyOf(endOffsets, count * 2);
+        }
+        endOffsets[count++] = length;
+    }
+
+    /**
+     * Return the number of intermediate outputs in the file.
+     * @return the number of outputs.
+     */
+    public int getOutputCount() {
+        return count;
+    }
+
+    /**
+     * Return the number of the first intermediate output in the file.
+     * @return the number, or 0 if the file has no outputs.
+     */
+    public int getFirstOutputNumber() {
+        return firstNumber;
+    }
+
+    /**
+     * Check if the file has the given intermediate output.
+     * @param number of the intermediate output.
+     * @return true if the file has it, otherwise false.
+     */
+    public boolean hasOutput(int number) {
+        return count > 0 && number >= firstNumber && number < firstNumber + count;
+    }
+
+    /**
+     * Copy an intermediate output to the end of the given channel.
+     * @param number of the intermediate output.
+     * @param target the channel to copy to.
+     * @throws IOException if the output cannot be copied.
+     */
+    public void transferOutput(int number, FileChannel target) throws IOException {
+        int index = number - firstNumber;
+        long start = index == 0 ? 0 : endOffsets[index - 1];
+        long end = endOffsets[index];
+        if (source == null) {
+            writer.flush();
+            source = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        }
+        while (start < end) {
+            start += source.transferTo(start, end - start, target);
+        }
+    }
+
+    /**
+     * Close and delete the temporary file.
+     * @throws IOException if the file cannot be closed.
+     */
+    public void delete() throws IOException {
+        writer.close();
+        if (source != null) {
+            source.close();
+        }
+        file.delete();
+    }
+
+    @Override
+    public void write(char[] chars, int offset, int length) throws IOException {
+        writer.write(chars, offset, length);
+        this.length += length;
+    }
+
+    @Override
+    public void write(String string, int offset, int length) throws IOException {
+        writer.write(string, offset, length);
+        this.length += length;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        writer.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+
+}
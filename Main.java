@@ -1,51 +1,378 @@
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
 
 class Main {
 
+    // Quick lists of --quick-lists without sizes: blocks of up to 1024 bytes, 32 per size.
+    static final int DEFAULT_QUICK_LIST_SIZE = 1024;
+    static final int DEFAULT_QUICK_LIST_DEPTH = 32;
+    // Most consecutive allocations executed as one batch.
+    private static final int MAX_BATCH_SIZE = 4096;
+
+    // A run of consecutive allocations read from the trace.
+    private static class AllocationRun {
+        private int[] ids = new int[MAX_BATCH_SIZE];
+        private long[] sizes = new long[MAX_BATCH_SIZE];
+        private int count;
+
+        /**
+         * Read the allocations from the current instruction of the trace on, ending at a checkpoint.
+         * @param trace positioned at an allocation.
+         * @param instructionNumber the allocation's line number.
+         * @param checkpointInterval the number of instructions between checkpoints, or 0 for none.
+         * @return true if the trace is positioned at the instruction after the run, false if it has ended.
+         * @throws IOException if the trace cannot be read.
+         */
+        private boolean read(TraceReader trace, int instructionNumber, int checkpointInterval) throws IOException {
+            count = 0;
+            boolean next;
+            do {
+                ids[count] = trace.getId();
+                sizes[count] = trace.getBytes();
+                count++;
+                next = trace.next();
+            } while (next && trace.getCommand() == TraceReader.ALLOCATE && count < MAX_BATCH_SIZE
+                    && (checkpointInterval == 0 || (instructionNumber + count - 1) % checkpointInterval != 0));
+            return next;
+        }
+    }
+
     public static void main (String [] args) {
 
-        // I/O file name.
-        String fileName = "3-madoutputter";
+        // I/O file name, optionally followed by the allocation strategies to run and options.
+        String fileName = null;
+        ArrayList<String> strategies = new ArrayList<>();
+        boolean parallel = false;
+        boolean binary = false;
+        boolean compactionReport = false;
+        boolean metrics = false;
+        int checkpointInterval = 0;
+        String resumeFileName = null;
+        CompactionPolicy compactionPolicy = null;
+        int quickListSize = 0;
+        int quickListDepth = 0;
+        String serveAddress = null;
+        for (String arg : args) {
+            if (arg.equals("--parallel")) {
+                parallel = true;
+            } else if (arg.equals("--binary")) {
+                binary = true;
+            } else if (arg.startsWith("--checkpoint-every=")) {
+                checkpointInterval = Integer.parseInt(arg.substring(arg.indexOf('=') + 1));
+            } else if (arg.equals("--resume")) {
+                resumeFileName = "";
+            } else if (arg.startsWith("--resume=")) {
+                resumeFileName = arg.substring(arg.indexOf('=') + 1);
+            } else if (arg.equals("--metrics")) {
+                metrics = true;
+            } else if (arg.equals("--compaction-report")) {
+                compactionReport = true;
+            } else if (arg.startsWith("--compact-on-failure=")) {
+                compactionPolicy = CompactionPolicy.fromName(arg.substring(arg.indexOf('=') + 1));
+                compactionReport = true;
+            } else if (arg.equals("--quick-lists")) {
+                quickListSize = DEFAULT_QUICK_LIST_SIZE;
+                quickListDepth = DEFAULT_QUICK_LIST_DEPTH;
+            } else if (arg.startsWith("--quick-lists=")) {
+                String[] quickLists = arg.substring(arg.indexOf('=') + 1).split(":");
+                quickListSize = Integer.parseInt(quickLists[0]);
+                quickListDepth = quickLists.length > 1 ? Integer.parseInt(quickLists[1]) : DEFAULT_QUICK_LIST_DEPTH;
+            } else if (arg.equals("--serve")) {
+                serveAddress = "";
+            } else if (arg.startsWith("--serve=")) {
+                serveAddress = arg.substring(arg.indexOf('=') + 1);
+            } else if (arg.startsWith("--")) {
+                throw new IllegalArgumentException("Unknown option: " + arg);
+            } else if (fileName == null) {
+                fileName = arg;
+            } else {
+                strategies.add(arg);
+            }
+        }
 
-        // Read file, set memory capacity, and get an array with the instructions.
+        // Served instructions have no file, so every argument names a strategy.
+        if (serveAddress != null && fileName != null) {
+            strategies.add(0, fileName);
+            fileName = null;
+        }
+        if (fileName == null) {
+            fileName = "3-madoutputter";
+        }
+        if (resumeFileName != null && resumeFileName.isEmpty()) {
+            resumeFileName = fileName;
+        }
+        if (parallel && checkpointInterval > 0) {
+            throw new IllegalArgumentException("--checkpoint-every cannot be combined with --parallel");
+        }
+        if (serveAddress != null && (parallel || binary || metrics || checkpointInterval > 0 || resumeFileName != null)) {
+            throw new IllegalArgumentException("--serve cannot be combined with --parallel, --binary, --metrics, --checkpoint-every or --resume");
+        }
+
+        // Executors for each strategy, each with its own memory, from final copies of the options.
+        boolean withMetrics = metrics;
+        int quickListBlockSize = quickListSize;
+        int quickListBlockCount = quickListDepth;
+        CompactionPolicy failedAllocationPolicy = compactionPolicy;
+        boolean withCompactionReport = compactionReport;
+        Supplier<ArrayList<CommandExecutor>> executorFactory = () -> createCommandExecutors(strategies, withMetrics,
+                quickListBlockSize, quickListBlockCount, failedAllocationPolicy, withCompactionReport);
         IOFile ioFile = new IOFile(fileName);
-        Memory firstFit = new Memory(new FirstFit());
-        Memory bestFit = new Memory(new BestFit());
-        Memory worstFit = new Memory(new WorstFit());
-        ArrayList<String> instructions = ioFile.readInputFile(firstFit, bestFit, worstFit);
 
-        // Execute commands for first fit, best fit, and  worst fit
-        ArrayList<CommandExecutor> commandExecutors = new ArrayList<>();
-        commandExecutors.add(new CommandExecutor(firstFit));
-        commandExecutors.add(new CommandExecutor(bestFit));
-        commandExecutors.add(new CommandExecutor(worstFit));
+        // Serve instructions from stdin or a socket instead of a file.
+        if (serveAddress != null) {
+            SimulatorService service = new SimulatorService(executorFactory, ioFile);
+            try {
+                if (serveAddress.isEmpty()) {
+                    service.serve(System.in, System.out);
+                } else {
+                    service.listen(serveAddress);
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            return;
+        }
 
+        // Open file and set memory capacity.
+        ArrayList<CommandExecutor> commandExecutors = executorFactory.get();
+        ArrayList<Memory> memories = new ArrayList<>();
         for (CommandExecutor commandExecutor : commandExecutors) {
-            int instructionNumber = 1;
-            for (String line : instructions) {
-                String[] instruction = line.split(";");
-                String command = instruction[0];
-
-                switch (command) {
-                    case "A":
-                        commandExecutor.allocate(instructionNumber, instruction[1], instruction[2]);
-                        break;
-                    case "D":
-                        commandExecutor.deallocate(instructionNumber, instruction[1]);
-                        break;
-                    case "C":
-                        commandExecutor.compact();
-                        break;
-                    case "O":
-                        commandExecutor.intermediateOutput(ioFile.getOutputForStrategy(commandExecutor));
-                }
-                instructionNumber++;
+            memories.add(commandExecutor.getMemory());
+        }
+        TraceReader trace = ioFile.openInputFile(memories, binary);
+        if (trace == null) {
+            return;
+        }
+
+        // Continue from the state after the checkpoint's last instruction.
+        int executedInstructions = 0;
+        if (resumeFileName != null) {
+            executedInstructions = ioFile.readCheckpoint(commandExecutors, resumeFileName);
+            if (executedInstructions < 0) {
+                return;
             }
         }
 
+        try {
+            if (parallel) {
+                executeParallel(commandExecutors, new DecodedTrace(trace), ioFile, executedInstructions);
+            } else {
+                executeSequential(commandExecutors, trace, ioFile, executedInstructions, checkpointInterval);
+            }
+            trace.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+
         // Write results into output files
         ioFile.writeOutputFile(commandExecutors);
-        
+        if (metrics) {
+            ioFile.writeMetricsFile(commandExecutors);
+        }
+
+    }
+
+    /**
+     * Create an executor with a new memory for each strategy.
+     * @param strategies the names of the strategies, or none for first fit, best fit, and worst fit.
+     * @param metrics true to instrument the memories.
+     * @param quickListSize the largest block size cached by the quick lists, or 0 for none.
+     * @param quickListDepth the number of blocks cached per size.
+     * @param compactionPolicy for compacting before a failed allocation is reported, or null.
+     * @param compactionReport true to record the compactions.
+     * @return the executors, in the order of the strategies.
+     */
+    private static ArrayList<CommandExecutor> createCommandExecutors(ArrayList<String> strategies, boolean metrics,
+            int quickListSize, int quickListDepth, CompactionPolicy compactionPolicy, boolean compactionReport) {
+
+        // By default compare first fit, best fit, and worst fit.
+        ArrayList<Memory> memories = new ArrayList<>();
+        if (strategies.isEmpty()) {
+            memories.add(new Memory(new FirstFit()));
+            memories.add(new Memory(new BestFit()));
+            memories.add(new Memory(new WorstFit()));
+        } else {
+            for (String strategy : strategies) {
+                memories.add(new Memory(createStrategy(strategy)));
+            }
+        }
+
+        ArrayList<CommandExecutor> commandExecutors = new ArrayList<>();
+        for (Memory memory : memories) {
+            if (metrics) {
+                memory.setMetrics(new Metrics());
+            }
+            memory.setQuickLists(quickListSize, quickListDepth);
+            CommandExecutor commandExecutor = new CommandExecutor(memory);
+            commandExecutor.setCompactionPolicy(compactionPolicy);
+            if (compactionReport) {
+                commandExecutor.reportCompactions();
+            }
+            commandExecutors.add(commandExecutor);
+        }
+        return commandExecutors;
+    }
+
+    /**
+     * Stream each instruction of the trace to all strategies.
+     * Runs of allocations are executed as batches, unless metrics time each instruction.
+     * @param commandExecutors the executors for each allocation strategy.
+     * @param trace the instructions.
+     * @param ioFile for the intermediate outputs.
+     * @param executedInstructions the number of instructions executed before a checkpoint, which are skipped.
+     * @param checkpointInterval the number of instructions between checkpoints, or 0 for none.
+     * @throws IOException if the trace cannot be read.
+     */
+    private static void executeSequential(ArrayList<CommandExecutor> commandExecutors, TraceReader trace, IOFile ioFile,
+            int executedInstructions, int checkpointInterval) throws IOException {
+        int instructionNumber = skipInstructions(trace, executedInstructions) + 1;
+        AllocationRun run = commandExecutors.get(0).getMetrics() == null ? new AllocationRun() : null;
+        boolean next = trace.next();
+        while (next) {
+            int count = 1;
+            if (run != null && trace.getCommand() == TraceReader.ALLOCATE) {
+                next = run.read(trace, instructionNumber, checkpointInterval);
+                for (CommandExecutor commandExecutor : commandExecutors) {
+                    commandExecutor.allocateBatch(instructionNumber, run.ids, run.sizes, run.count);
+                }
+                count = run.count;
+            } else {
+                for (CommandExecutor commandExecutor : commandExecutors) {
+                    execute(commandExecutor, instructionNumber, trace, ioFile);
+                }
+                next = trace.next();
+            }
+            instructionNumber += count;
+
+            // Runs end at checkpoints, so the last instruction executed is the one to check.
+            if (checkpointInterval > 0 && (instructionNumber - 1) % checkpointInterval == 0) {
+                ioFile.writeCheckpoint(commandExecutors, instructionNumber - 1);
+            }
+        }
+    }
+
+    /**
+     * Run each strategy on its own thread over the same decoded trace.
+     * @param commandExecutors the executors for each allocation strategy.
+     * @param trace the decoded instructions.
+     * @param ioFile for the intermediate outputs.
+     * @param executedInstructions the number of instructions executed before a checkpoint, which are skipped.
+     * @throws IOException if the intermediate output files cannot be created.
+     */
+    private static void executeParallel(ArrayList<CommandExecutor> commandExecutors, DecodedTrace trace, IOFile ioFile,
+            int executedInstructions) throws IOException {
+
+        // Each strategy keeps its intermediate outputs in its own file until they are merged.
+        for (CommandExecutor commandExecutor : commandExecutors) {
+            commandExecutor.setIntermediateOutputFile(ioFile.createIntermediateOutputFile());
+        }
+
+        ExecutorService threads = Executors.newFixedThreadPool(commandExecutors.size());
+        ArrayList<Future<?>> results = new ArrayList<>();
+        for (CommandExecutor commandExecutor : commandExecutors) {
+            results.add(threads.submit(() -> {
+                TraceReader reader = trace.newReader();
+                int instructionNumber = skipInstructions(reader, executedInstructions) + 1;
+                AllocationRun run = commandExecutor.getMetrics() == null ? new AllocationRun() : null;
+                boolean next = reader.next();
+                while (next) {
+                    if (run != null && reader.getCommand() == TraceReader.ALLOCATE) {
+                        next = run.read(reader, instructionNumber, 0);
+                        commandExecutor.allocateBatch(instructionNumber, run.ids, run.sizes, run.count);
+                        instructionNumber += run.count;
+                    } else {
+                        execute(commandExecutor, instructionNumber, reader, ioFile);
+                        next = reader.next();
+                        instructionNumber++;
+                    }
+                }
+                return null;
+            }));
+        }
+        try {
+            for (Future<?> result : results) {
+                result.get();
+            }
+        } catch (InterruptedException | ExecutionException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            threads.shutdown();
+        }
+    }
+
+    /**
+     * Read past instructions without executing them.
+     * @param trace the instructions.
+     * @param count the number of instructions to skip.
+     * @return the number of instructions skipped, less than count if the trace ends first.
+     * @throws IOException if the trace cannot be read.
+     */
+    private static int skipInstructions(TraceReader trace, int count) throws IOException {
+        int skipped = 0;
+        while (skipped < count && trace.next()) {
+            skipped++;
+        }
+        return skipped;
+    }
+
+    /**
+     * Execute the current instruction of the trace for a strategy.
+     * @param commandExecutor the executor of the strategy.
+     * @param instructionNumber the instruction's line number.
+     * @param trace positioned at the instruction.
+     * @param ioFile for the intermediate outputs.
+     */
+    private static void execute(CommandExecutor commandExecutor, int instructionNumber, TraceReader trace, IOFile ioFile) {
+        Metrics metrics = commandExecutor.getMetrics();
+        long startTime = metrics == null ? 0 : System.nanoTime();
+        switch (trace.getCommand()) {
+            case TraceReader.ALLOCATE:
+                commandExecutor.allocate(instructionNumber, trace.getId(), trace.getBytes());
+                break;
+            case TraceReader.DEALLOCATE:
+                commandExecutor.deallocate(instructionNumber, trace.getId());
+                break;
+            case TraceReader.COMPACT:
+                commandExecutor.compact(instructionNumber);
+                break;
+            case TraceReader.OUTPUT:
+                ioFile.writeIntermediateOutput(commandExecutor);
+                break;
+            case TraceReader.REALLOCATE:
+                commandExecutor.reallocate(instructionNumber, trace.getId(), trace.getBytes());
+        }
+        if (metrics != null) {
+            metrics.recordLatency(trace.getCommand(), System.nanoTime() - startTime);
+        }
+    }
+
+    /**
+     * Return the allocation strategy with the given name.
+     * @param name of the strategy (first, best, worst, next, buddy or tlsf).
+     * @return the allocation strategy.
+     */
+    static AllocationStrategy createStrategy(String name) {
+        switch (name) {
+            case "first":
+                return new FirstFit();
+            case "best":
+                return new BestFit();
+            case "worst":
+                return new WorstFit();
+            case "next":
+                return new NextFit();
+            case "buddy":
+                return new BuddyAllocator();
+            case "tlsf":
+                return new TwoLevelSegregatedFit();
+            default:
+                throw new IllegalArgumentException("Unknown allocation strategy: " + name);
+        }
     }
 
 }
@@ -0,0 +1,63 @@
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+public class MappedFileReader implements ByteReader {
+
+    // The file is mapped in windows, so files larger than 2 GB can be read.
+    private static final long WINDOW_SIZE = 1L << 26;
+
+    private FileChannel channel;
+    private long fileSize;
+    private MappedByteBuffer window;
+    private long windowStart;
+
+    /**
+     * Constructor, maps the start of the file.
+     * @param path of the file.
+     * @throws IOException if the file cannot be read.
+     */
+    public MappedFileReader(String path) throws IOException {
+        channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ);
+        fileSize = channel.size();
+        map(0);
+    }
+
+    /**
+     * Return the size of the file.
+     * @return the size in bytes.
+     */
+    public long getFileSize() {
+        return fileSize;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!window.hasRemaining()) {
+            long nextStart = windowStart + window.limit();
+            if (nextStart >= fileSize) {
+                return END_OF_FILE;
+            }
+            map(nextStart);
+        }
+        return window.get() & 0xFF;
+    }
+
+    @Override
+    public void unread() {
+        window.position(window.position() - 1);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private void map(long start) throws IOException {
+        windowStart = start;
+        window = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(WINDOW_SIZE, fileSize - start));
+    }
+
+}
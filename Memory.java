@@ -1,9 +1,44 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 
 public class Memory {
 
-    private int capacity;
-    private ArrayList<Block> blocks;
+    private long capacity;
+    // Allocated and free blocks are extents, referred to by handle. Together they cover the memory in address order.
+    private Extents extents;
+    private int firstPhysical;
+    // Allocated blocks in allocation order.
+    private int firstAllocated;
+    private int lastAllocated;
+    private int blockCount;
+    // Earliest allocated block of each id. Later blocks with the same id are chained to it in allocation order.
+    private IntIntMap blocksById;
+    // Free blocks by address and by size for the strategies that search them, otherwise null.
+    private FreeBlockTree freeBlocks;
+    private FreeBlockSizeTree freeBlocksBySize;
+    // Free blocks by start address, instead of the indexes, if the strategy keeps its own free lists, otherwise null.
+    private LongLongMap freeBlocksByStart;
+    // Free space statistics, updated with the free block indexes.
+    private long freeMemory;
+    private int freeBlockCount;
+    // Cost of the last compaction.
+    private int movedBlocks;
+    private long movedBytes;
+    // Reallocations so far, resized in place or relocated.
+    private long inPlaceReallocations;
+    private long relocations;
+    // Bytes backing the memory, or null if only addresses are tracked.
+    private ByteBuffer storage;
+    // Deallocated blocks cached by exact size, newest first, linked by their allocation order links. Null if off.
+    private int[] quickListHeads;
+    private int[] quickListTails;
+    private int[] quickListLengths;
+    private int quickListDepth;
+    private int cachedBlockCount;
+    // Instrumentation, or null if it is turned off.
+    private Metrics metrics;
     private AllocationStrategy allocationStrategy;
 
     /**
@@ -11,7 +46,17 @@ public class Memory {
      * @param allocationStrategy for executing allocation.
      */
     public Memory(AllocationStrategy allocationStrategy) {
-        blocks = new ArrayList<>();
+        extents = new Extents();
+        firstPhysical = Extents.NONE;
+        firstAllocated = Extents.NONE;
+        lastAllocated = Extents.NONE;
+        blocksById = new IntIntMap();
+        if (allocationStrategy.keepsFreeLists()) {
+            freeBlocksByStart = new LongLongMap();
+        } else {
+            freeBlocks = new FreeBlockTree(extents);
+            freeBlocksBySize = new FreeBlockSizeTree(extents);
+        }
         this.allocationStrategy = allocationStrategy;
     }
 
@@ -19,60 +64,364 @@ public class Memory {
      * Set a max capacity for the memory.
      * @param capacity of the memory.
      */
-    public void setCapacity(int capacity) {
+    public void setCapacity(long capacity) {
+        if (storage != null && storage.capacity() < capacity) {
+            throw new IllegalArgumentException("Storage is smaller than the capacity: " + storage.capacity());
+        }
+        flushQuickLists();
         this.capacity = capacity;
+        rebuildFreeBlocks();
+        allocationStrategy.reset(this);
     }
 
     /**
      * Return the total capacity of memory.
      * @return the capacity.
      */
-    public int getCapacity() {
+    public long getCapacity() {
         return capacity;
     }
 
+    /**
+     * Back the memory with storage, e.g. ByteBuffer.allocateDirect(capacity) or a mapped file.
+     * Each allocated block then gets a view of its bytes, without copying, and compaction moves the bytes.
+     * @param storage at least as big as the capacity, or null to only track addresses.
+     */
+    public void setStorage(ByteBuffer storage) {
+        if (storage != null && storage.capacity() < capacity) {
+            throw new IllegalArgumentException("Storage is smaller than the capacity: " + storage.capacity());
+        }
+        this.storage = storage;
+    }
+
+    /**
+     * Return the storage backing the memory.
+     * @return the storage, or null if only addresses are tracked.
+     */
+    public ByteBuffer getStorage() {
+        return storage;
+    }
+
+    /**
+     * Keep deallocated blocks of up to maxBlockSize bytes in quick lists of their exact size, and reuse them
+     * for allocations of the same size without searching or splitting the free blocks.
+     * Cached blocks are reported as free blocks but are not coalesced, and the allocation strategy is only told
+     * about the deallocation when they leave the quick lists: when a list holds more than depth blocks (its oldest
+     * is evicted), when an allocation fails (all are flushed and it is retried), and on compaction.
+     * Strategies that allocate more bytes than requested (buddy) are not cached.
+     * @param maxBlockSize the largest cached block size, or 0 to turn the quick lists off.
+     * @param depth the most blocks kept per size.
+     */
+    public void setQuickLists(int maxBlockSize, int depth) {
+        flushQuickLists();
+        if (maxBlockSize <= 0 || depth <= 0 || allocationStrategy.hasInternalFragmentation()) {
+            quickListHeads = null;
+            quickListTails = null;
+            quickListLengths = null;
+            return;
+        }
+        quickListHeads = new int[maxBlockSize + 1];
+        quickListTails = new int[maxBlockSize + 1];
+        Arrays.fill(quickListHeads, Extents.NONE);
+        Arrays.fill(quickListTails, Extents.NONE);
+        quickListLengths = new int[maxBlockSize + 1];
+        quickListDepth = depth;
+    }
+
+    /**
+     * Return the number of deallocated blocks cached in the quick lists.
+     * @return the number of cached blocks.
+     */
+    public int getCachedBlockCount() {
+        return cachedBlockCount;
+    }
+
+    /**
+     * Record latencies, free blocks examined, splits, coalesces and compactions.
+     * @param metrics where they are recorded, or null to turn instrumentation off.
+     */
+    public void setMetrics(Metrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Return the instrumentation of the memory, for strategies and executors to record to.
+     * @return the metrics, or null if instrumentation is off.
+     */
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Write the capacity, the allocated blocks in allocation order, and the state of the allocation strategy.
+     * @param checkpoint where the state is written.
+     * @throws IOException if the checkpoint cannot be written.
+     */
+    public void writeState(Checkpoint checkpoint) throws IOException {
+        checkpoint.putLong(capacity);
+        checkpoint.putInt(blockCount);
+        for (int block = firstAllocated; block != Extents.NONE; block = extents.getNextAllocated(block)) {
+            checkpoint.putInt(extents.getId(block));
+            checkpoint.putLong(extents.getStartAddress(block));
+            checkpoint.putLong(extents.getSize(block));
+        }
+
+        // The cached blocks, oldest first in each list.
+        checkpoint.putInt(cachedBlockCount);
+        for (int size = 0; quickListHeads != null && size < quickListHeads.length; size++) {
+            for (int block = quickListTails[size]; block != Extents.NONE; block = extents.getPreviousAllocated(block)) {
+                checkpoint.putLong(extents.getStartAddress(block));
+                checkpoint.putLong(extents.getSize(block));
+            }
+        }
+        checkpoint.putLong(inPlaceReallocations);
+        checkpoint.putLong(relocations);
+        allocationStrategy.writeState(checkpoint, this);
+    }
+
+    /**
+     * Replace the state of the memory with the one written by writeState.
+     * The bytes of the storage, if any, are not part of the state.
+     * @param checkpoint where the state is read from.
+     * @throws IOException if the checkpoint cannot be read.
+     */
+    public void readState(Checkpoint checkpoint) throws IOException {
+        capacity = checkpoint.getLong();
+        extents.clear();
+        clearQuickLists();
+        firstPhysical = Extents.NONE;
+        firstAllocated = Extents.NONE;
+        lastAllocated = Extents.NONE;
+        blockCount = 0;
+        blocksById.clear();
+        rebuildFreeBlocks();
+
+        // The allocated blocks in allocation order, then the cached blocks.
+        int allocatedCount = checkpoint.getInt();
+        int[] ids = new int[allocatedCount];
+        long[] startAddresses = new long[allocatedCount];
+        long[] sizes = new long[allocatedCount];
+        for (int i = 0; i < allocatedCount; i++) {
+            ids[i] = checkpoint.getInt();
+            startAddresses[i] = checkpoint.getLong();
+            sizes[i] = checkpoint.getLong();
+        }
+        int count = allocatedCount + checkpoint.getInt();
+        ids = Arrays.copyOf(ids, count);
+        startAddresses = Arrays.copyOf(startAddresses, count);
+        sizes = Arrays.copyOf(sizes, count);
+        for (int i = allocatedCount; i < count; i++) {
+            ids[i] = -1;
+            startAddresses[i] = checkpoint.getLong();
+            sizes[i] = checkpoint.getLong();
+        }
+        int[] blocks = splitFreeBlocks(ids, startAddresses, sizes);
+
+        // Linking the blocks in allocation order also restores the order of blocks with the same id.
+        for (int i = 0; i < allocatedCount; i++) {
+            linkAllocatedBlock(ids[i], blocks[i]);
+        }
+
+        // Without quick lists the cached blocks are freed, the strategy's reset below then sees them as free too.
+        for (int i = allocatedCount; i < count; i++) {
+            int block = blocks[i];
+            if (isCacheable(block)) {
+                cacheBlock(block);
+            } else {
+                releaseFreeBlock(block);
+            }
+        }
+        inPlaceReallocations = checkpoint.getLong();
+        relocations = checkpoint.getLong();
+        allocationStrategy.reset(this);
+        allocationStrategy.readState(checkpoint, this);
+    }
+
     /**
      * Add a block to the memory's alocated blocks.
-     * @param block to add to memory.
+     * @param id of the block.
      * @param startAdress of allocation.
      * @param endAddress of allocation.
      */
-    public void addBlock(Block block, int startAdress, int endAddress) {
-        block.allocate(startAdress, endAddress);
-        blocks.add(block);
+    public void addBlock(int id, long startAdress, long endAddress) {
+        linkAllocatedBlock(id, splitFreeBlock(findFreeBlock(startAdress), id, startAdress, endAddress));
+    }
+
+    /**
+     * Split extents for blocks out of the free memory in address order, so the free block that contains
+     * each block is the last extent and does not have to be searched.
+     * @param ids of the blocks.
+     * @param startAddresses of the blocks, all different.
+     * @param sizes of the blocks.
+     * @return the blocks, in the order of the arrays, in address order but not yet in allocation order.
+     */
+    private int[] splitFreeBlocks(int[] ids, long[] startAddresses, long[] sizes) {
+        LongLongMap indexes = new LongLongMap();
+        for (int i = 0; i < startAddresses.length; i++) {
+            indexes.put(startAddresses[i], i);
+        }
+        long[] sortedStartAddresses = startAddresses.clone();
+        Arrays.sort(sortedStartAddresses);
+        int[] blocks = new int[ids.length];
+        int freeBlock = firstPhysical;
+        for (long startAddress : sortedStartAddresses) {
+            int i = (int) indexes.get(startAddress);
+            blocks[i] = splitFreeBlock(freeBlock, ids[i], startAddress, startAddress + sizes[i] - 1);
+            freeBlock = extents.getNextPhysical(blocks[i]);
+        }
+        return blocks;
+    }
+
+    /**
+     * Split an extent for a new block out of the free block that contains it.
+     * @param freeBlock the free block that contains the new block, or NONE.
+     * @param id of the block.
+     * @param startAdress of the block.
+     * @param endAddress of the block.
+     * @return the block, in address order but not yet in allocation order.
+     */
+    private int splitFreeBlock(int freeBlock, int id, long startAdress, long endAddress) {
+        if (freeBlock == Extents.NONE || extents.getEndAddress(freeBlock) < endAddress) {
+            throw new IllegalArgumentException("Not a free address range: " + startAdress + ";" + endAddress);
+        }
+        long freeStartAddress = extents.getStartAddress(freeBlock);
+        long freeEndAddress = extents.getEndAddress(freeBlock);
+        if (metrics != null && freeEndAddress - freeStartAddress > endAddress - startAdress) {
+            metrics.split();
+        }
+
+        // A block at the start of the free block only moves its start up, which keeps its place by address.
+        if (freeStartAddress == startAdress && endAddress < freeEndAddress) {
+            int block = extents.add(id, startAdress, endAddress, false);
+            insertPhysical(extents.getPreviousPhysical(freeBlock), block);
+            moveFreeBlockStart(freeBlock, endAddress + 1);
+            return block;
+        }
+        removeFreeBlock(freeBlock);
+
+        // Split it into the free part before the block, the block, and the free part after it (which keeps the handle).
+        int block = extents.add(id, startAdress, endAddress, false);
+        int previous = extents.getPreviousPhysical(freeBlock);
+        if (freeStartAddress < startAdress) {
+            int lowerBlock = extents.add(-1, freeStartAddress, startAdress - 1, true);
+            insertPhysical(previous, lowerBlock);
+            addFreeBlock(lowerBlock);
+            previous = lowerBlock;
+        }
+        insertPhysical(previous, block);
+        if (endAddress < freeEndAddress) {
+            extents.setStartAddress(freeBlock, endAddress + 1);
+            addFreeBlock(freeBlock);
+        } else {
+            unlinkPhysical(freeBlock);
+            extents.remove(freeBlock);
+        }
+        return block;
+    }
+
+    /**
+     * Add a block to the end of the allocation order, and after the earlier blocks with its id.
+     * @param id of the block.
+     * @param block the block.
+     */
+    private void linkAllocatedBlock(int id, int block) {
+        extents.linkAllocated(lastAllocated, block);
+        if (firstAllocated == Extents.NONE) {
+            firstAllocated = block;
+        }
+        lastAllocated = block;
+        blockCount++;
+        int sameId = blocksById.get(id);
+        if (sameId == IntIntMap.MISSING) {
+            blocksById.put(id, block);
+        } else {
+            while (extents.getNextSameId(sameId) != Extents.NONE) {
+                sameId = extents.getNextSameId(sameId);
+            }
+            extents.setNextSameId(sameId, block);
+        }
+    }
+
+    /**
+     * Check if no blocks are allocated in memory.
+     * Cached blocks count as allocated, since their addresses are still taken.
+     * @return true if memory is empty, otherwise false.
+     */
+    public boolean isEmpty() {
+        return blockCount == 0 && cachedBlockCount == 0;
+    }
+
+    /**
+     * Return the earliest allocated block with the given id.
+     * The view stays tied to that block, even if other blocks have the same id, and throws IllegalStateException
+     * once the block is moved (by compaction or reallocation), resized or deallocated.
+     * @param id of the block.
+     * @return a new view of the block, or null if no block with the id is allocated.
+     */
+    public Block getBlock(int id) {
+        int block = blocksById.get(id);
+        return block == IntIntMap.MISSING ? null : newBlock(block);
+    }
+
+    /**
+     * Return the start address of the earliest allocated block with the given id.
+     * @param id of the block.
+     * @return the start address, or -1 if no block with the id is allocated.
+     */
+    public long getStartAddress(int id) {
+        int block = blocksById.get(id);
+        return block == IntIntMap.MISSING ? -1 : extents.getStartAddress(block);
+    }
+
+    /**
+     * Return the start address of the block allocated last, which is the last in allocation order.
+     * @return the start address, or -1 if no block is allocated.
+     */
+    public long getLastAllocatedAddress() {
+        return lastAllocated == Extents.NONE ? -1 : extents.getStartAddress(lastAllocated);
+    }
+
+    /**
+     * Return the end address of the block allocated last, which is the last in allocation order.
+     * @return the end address, or -1 if no block is allocated.
+     */
+    public long getLastAllocatedEndAddress() {
+        return lastAllocated == Extents.NONE ? -1 : extents.getEndAddress(lastAllocated);
+    }
+
+    /**
+     * Return the current state of the memory in constant time.
+     * The snapshot shares the extents, which are copied on write, so later changes do not affect it.
+     * @return the snapshot.
+     */
+    public MemorySnapshot snapshot() {
+        return new MemorySnapshot(this, extents.snapshot(), firstAllocated, firstPhysical);
     }
 
     /**
      * Return the allocated blocks from the memory.
-     * @return a copy of the blocks array.
+     * @return new views of the blocks, in allocation order.
      */
     public ArrayList<Block> getBlocks() {
-        ArrayList<Block> copyBlocks = new ArrayList<>();
-        for (Block b : blocks) {
-            copyBlocks.add(b);
+        ArrayList<Block> copyBlocks = new ArrayList<>(blockCount);
+        for (int block = firstAllocated; block != Extents.NONE; block = extents.getNextAllocated(block)) {
+            copyBlocks.add(newBlock(block));
         }
         return copyBlocks;
     }
 
     /**
-     * Return the allocated blocks sorted by start address.
-     * @return the allocated blocks
+     * Return the allocated blocks sorted by start address, for allocation strategies.
+     * Cached blocks are included, since the strategy has not been told they were deallocated.
+     * @return new views of the allocated blocks.
      */
     public ArrayList<Block> getSortedBlocks() {
-        ArrayList<Block> sortedBlocks = new ArrayList<>();
-        int startLowestBlock;
-        Block lowestBlock = new Block(-1);
-        for (int i = 0; i < blocks.size(); i++) {
-            startLowestBlock = capacity;
-            for (Block b : blocks) {
-                if (b.getStartAddress() < startLowestBlock && !sortedBlocks.contains(b)) {
-                    lowestBlock = b;
-                    startLowestBlock = b.getStartAddress();
-                }
+        ArrayList<Block> sortedBlocks = new ArrayList<>(blockCount);
+        for (int extent = firstPhysical; extent != Extents.NONE; extent = extents.getNextPhysical(extent)) {
+            if (!extents.isFree(extent)) {
+                sortedBlocks.add(newBlock(extent));
             }
-            sortedBlocks.add(lowestBlock);
         }
-
         return sortedBlocks;
     }
 
@@ -82,20 +431,52 @@ public class Memory {
      * @param bytes of the block.
      * @return true if allocated, otherwise false.
      */
-    public boolean allocateBlock(int id, int bytes) {
+    public boolean allocateBlock(int id, long bytes) {
 
         // Return false if not enough capacity to allocate block
         if (bytes > capacity) {
             return false;
         }
 
-        // If memory is empty and big enough alocate the block
-        if (blocks.isEmpty()) {
-            addBlock(new Block(id), 0, bytes - 1);
+        // Otherwise use allocation strategy
+        if (metrics == null) {
+            return allocate(id, bytes);
+        }
+        metrics.startAllocation();
+        boolean allocated = allocate(id, bytes);
+        metrics.endAllocation();
+        return allocated;
+    }
+
+    private boolean allocate(int id, long bytes) {
+        if (quickListHeads == null) {
+            return allocationStrategy.allocateBlock(id, bytes, this);
+        }
+
+        // Reuse the newest cached block of the same size.
+        if (bytes < quickListHeads.length && quickListHeads[(int) bytes] != Extents.NONE) {
+            int block = quickListHeads[(int) bytes];
+            removeCachedBlock(block);
+            extents.setId(block, id);
+            extents.setFree(block, false);
+            linkAllocatedBlock(id, block);
+            if (metrics != null) {
+                metrics.quickListHit();
+            }
+            return true;
+        }
+        if (metrics != null) {
+            metrics.quickListMiss();
+        }
+        if (allocationStrategy.allocateBlock(id, bytes, this)) {
             return true;
         }
 
-        // If memory is not empty use allocation strategy
+        // Under pressure, return the cached blocks to the free blocks and try again.
+        if (cachedBlockCount == 0) {
+            return false;
+        }
+        flushQuickLists();
         return allocationStrategy.allocateBlock(id, bytes, this);
     }
 
@@ -105,87 +486,830 @@ public class Memory {
      * @return true if the block has been removed, otherwise false.
      */
     public boolean deallocateBlock(int id) {
-        for (Block block : blocks) {
-            if (block.getId() == id) {
-                return blocks.remove(block);
+
+        // Find the earliest allocated block with the id.
+        int block = blocksById.get(id);
+        if (block == IntIntMap.MISSING) {
+            return false;
+        }
+        int nextSameId = extents.getNextSameId(block);
+        if (nextSameId == Extents.NONE) {
+            blocksById.remove(id);
+        } else {
+            blocksById.put(id, nextSameId);
+        }
+
+        int previous = extents.getPreviousAllocated(block);
+        int next = extents.getNextAllocated(block);
+        extents.linkAllocated(previous, next);
+        if (previous == Extents.NONE) {
+            firstAllocated = next;
+        }
+        if (next == Extents.NONE) {
+            lastAllocated = previous;
+        }
+        blockCount--;
+        releaseBlock(block);
+        return true;
+    }
+
+    /**
+     * Resize the earliest allocated block with the given id, keeping its place in the allocation order.
+     * The allocation strategy first tries to resize it in place. Otherwise a new block is allocated,
+     * the bytes are copied if memory has storage, and the old block is deallocated.
+     * Without an allocated block with the id, a new block is allocated as by allocateBlock.
+     * @param id of the block.
+     * @param bytes the new size of the block.
+     * @return true if reallocated, otherwise false and the block is unchanged.
+     */
+    public boolean reallocateBlock(int id, long bytes) {
+        int block = blocksById.get(id);
+        if (block == IntIntMap.MISSING) {
+            return allocateBlock(id, bytes);
+        }
+        if (bytes <= 0 || bytes > capacity) {
+            return false;
+        }
+
+        // Resize in place if the strategy can.
+        long startAddress = extents.getStartAddress(block);
+        long endAddress = extents.getEndAddress(block);
+        if (allocationStrategy.reallocateBlock(id, startAddress, endAddress, bytes, this)) {
+            inPlaceReallocations++;
+            return true;
+        }
+
+        // Otherwise allocate a new block with the id, which is added last, and put it in the place of the old one.
+        if (!allocateBlock(id, bytes)) {
+            return false;
+        }
+        int newBlock = lastAllocated;
+        if (storage != null) {
+            long copiedBytes = Math.min(bytes, endAddress - startAddress + 1);
+            storage.put((int) extents.getStartAddress(newBlock), storage, (int) startAddress, (int) copiedBytes);
+        }
+        replaceAllocatedBlock(block, newBlock);
+        blockCount--;
+        releaseBlock(block);
+        relocations++;
+        return true;
+    }
+
+    /**
+     * Resize the earliest allocated block with the given id in place, for allocation strategies.
+     * Shrinking frees the end of the block, growing takes the start of the free block right after it.
+     * @param id of the block.
+     * @param newEndAddress the new end address of the block.
+     * @return true if resized, false if the free block after it is missing or too small.
+     */
+    public boolean resizeBlock(int id, long newEndAddress) {
+        int block = blocksById.get(id);
+        long endAddress = extents.getEndAddress(block);
+        if (newEndAddress < endAddress) {
+
+            // Free the end of the block, coalescing it with the free block after it.
+            int freeBlock = extents.add(-1, newEndAddress + 1, endAddress, false);
+            insertPhysical(block, freeBlock);
+            extents.setEndAddress(block, newEndAddress);
+            releaseFreeBlock(freeBlock);
+        } else if (newEndAddress > endAddress) {
+            int next = extents.getNextPhysical(block);
+            if (next == Extents.NONE || !extents.isFree(next) || extents.getEndAddress(next) < newEndAddress) {
+                return false;
+            }
+
+            // Take the start of the free block after it, which keeps its handle if any of it is left.
+            if (newEndAddress < extents.getEndAddress(next)) {
+                moveFreeBlockStart(next, newEndAddress + 1);
+            } else {
+                removeFreeBlock(next);
+                unlinkPhysical(next);
+                extents.remove(next);
             }
+            extents.setEndAddress(block, newEndAddress);
+        }
+        return true;
+    }
+
+    /**
+     * Return the number of reallocations that resized the block in place.
+     * @return the number of reallocations.
+     */
+    public long getInPlaceReallocations() {
+        return inPlaceReallocations;
+    }
+
+    /**
+     * Return the number of reallocations that moved the block to a new address.
+     * @return the number of reallocations.
+     */
+    public long getRelocations() {
+        return relocations;
+    }
+
+    /**
+     * Put the last allocated block in the place of the earliest block with the same id,
+     * both in allocation order and among the blocks with the id, and unlink the earlier block.
+     * @param oldBlock the earliest allocated block with the id.
+     * @param block the last allocated block, with the same id.
+     */
+    private void replaceAllocatedBlock(int oldBlock, int block) {
+        int id = extents.getId(block);
+
+        // Remove the block from the end of the allocation order, then link it in the place of the old block.
+        lastAllocated = extents.getPreviousAllocated(block);
+        extents.linkAllocated(lastAllocated, Extents.NONE);
+        int previous = extents.getPreviousAllocated(oldBlock);
+        int next = extents.getNextAllocated(oldBlock);
+        extents.linkAllocated(previous, block);
+        extents.linkAllocated(block, next);
+        if (previous == Extents.NONE) {
+            firstAllocated = block;
+        }
+        if (next == Extents.NONE) {
+            lastAllocated = block;
+        }
+
+        // The block was added last among the blocks with the id, the old block is the first.
+        int sameId = oldBlock;
+        while (extents.getNextSameId(sameId) != block) {
+            sameId = extents.getNextSameId(sameId);
+        }
+        extents.setNextSameId(sameId, Extents.NONE);
+        extents.setNextSameId(block, extents.getNextSameId(oldBlock));
+        blocksById.put(id, block);
+    }
+
+    /**
+     * Cache a block removed from the allocation order in a quick list, or turn it into a free block
+     * and tell the allocation strategy.
+     * @param block the block.
+     */
+    private void releaseBlock(int block) {
+        if (isCacheable(block)) {
+            cacheBlock(block);
+            return;
+        }
+        long startAddress = extents.getStartAddress(block);
+        long endAddress = extents.getEndAddress(block);
+        releaseFreeBlock(block);
+        allocationStrategy.deallocateBlock(startAddress, endAddress, this);
+    }
+
+    /**
+     * Return every cached block to the free blocks, oldest first, and tell the allocation strategy.
+     */
+    public void flushQuickLists() {
+        if (cachedBlockCount == 0) {
+            return;
+        }
+        if (metrics != null) {
+            metrics.quickListFlushes(cachedBlockCount);
+        }
+        for (int size = 0; size < quickListHeads.length; size++) {
+            while (quickListTails[size] != Extents.NONE) {
+                int block = quickListTails[size];
+                removeCachedBlock(block);
+                releaseCachedBlock(block);
+            }
+        }
+    }
+
+    /**
+     * Check if a deallocated block goes to a quick list.
+     * The single byte at the end of memory is never cached, since it is not reported as a free block.
+     * @param block the block, already removed from the allocation order.
+     * @return true if it is cached, otherwise false.
+     */
+    private boolean isCacheable(int block) {
+        return quickListHeads != null && extents.getSize(block) < quickListHeads.length && !isHiddenFreeBlock(block);
+    }
+
+    /**
+     * Add a deallocated block to the head of the quick list of its size, evicting the oldest block if it is full.
+     * @param block the block, already removed from the allocation order.
+     */
+    private void cacheBlock(int block) {
+        int size = (int) extents.getSize(block);
+        if (quickListLengths[size] == quickListDepth) {
+            int oldest = quickListTails[size];
+            removeCachedBlock(oldest);
+            releaseCachedBlock(oldest);
+            if (metrics != null) {
+                metrics.quickListEviction();
+            }
+        }
+        extents.setCached(block);
+        extents.setNextSameId(block, Extents.NONE);
+        extents.linkAllocated(Extents.NONE, block);
+        extents.linkAllocated(block, quickListHeads[size]);
+        quickListHeads[size] = block;
+        if (quickListTails[size] == Extents.NONE) {
+            quickListTails[size] = block;
+        }
+        quickListLengths[size]++;
+        cachedBlockCount++;
+        freeMemory += size;
+        freeBlockCount++;
+    }
+
+    /**
+     * Remove a block from its quick list.
+     * @param block the cached block.
+     */
+    private void removeCachedBlock(int block) {
+        int size = (int) extents.getSize(block);
+        int newer = extents.getPreviousAllocated(block);
+        int older = extents.getNextAllocated(block);
+        extents.linkAllocated(newer, older);
+        extents.linkAllocated(Extents.NONE, block);
+        extents.linkAllocated(block, Extents.NONE);
+        if (newer == Extents.NONE) {
+            quickListHeads[size] = older;
+        }
+        if (older == Extents.NONE) {
+            quickListTails[size] = newer;
+        }
+        quickListLengths[size]--;
+        cachedBlockCount--;
+        freeMemory -= size;
+        freeBlockCount--;
+    }
+
+    /**
+     * Turn a block removed from its quick list into a free block and tell the allocation strategy.
+     * @param block the block.
+     */
+    private void releaseCachedBlock(int block) {
+        long startAddress = extents.getStartAddress(block);
+        long endAddress = extents.getEndAddress(block);
+        releaseFreeBlock(block);
+        allocationStrategy.deallocateBlock(startAddress, endAddress, this);
+    }
+
+    /**
+     * Empty the quick lists without freeing their blocks, whose extents are being removed.
+     */
+    private void clearQuickLists() {
+        cachedBlockCount = 0;
+        if (quickListHeads != null) {
+            Arrays.fill(quickListHeads, Extents.NONE);
+            Arrays.fill(quickListTails, Extents.NONE);
+            Arrays.fill(quickListLengths, 0);
         }
-        return false;
     }
 
     /**
      * Compact the memory.
      * Move all allocated blocks towards the lowest memory address (0).
+     * Blocks of strategies that align them to their size move to the lowest aligned address after the block before.
      */
     public void compact() {
-        int startAddress = 0;
-        int endAddress;
-        ArrayList<Block> sortedBlocks = getSortedBlocks();
-        for (Block block : sortedBlocks) {
-            endAddress = startAddress + block.getSize() - 1;
-            block.allocate(startAddress, endAddress);
-            startAddress = endAddress + 1;
+        flushQuickLists();
+        movedBlocks = 0;
+        movedBytes = 0;
+        long startAddress = 0;
+        for (int block = firstPhysical; block != Extents.NONE; block = extents.getNextPhysical(block)) {
+            if (extents.isFree(block)) {
+                continue;
+            }
+
+            // The block is aligned where it is, so aligning its new address never moves it up.
+            if (allocationStrategy.alignsBlocks()) {
+                long size = extents.getSize(block);
+                startAddress = (startAddress + size - 1) & -size;
+            }
+            if (extents.getStartAddress(block) != startAddress) {
+                moveBlock(block, startAddress);
+            }
+            startAddress += extents.getSize(block);
+        }
+        rebuildFreeBlocks();
+        allocationStrategy.reset(this);
+        if (metrics != null) {
+            metrics.compaction(movedBlocks, movedBytes);
         }
     }
 
     /**
-     * Return the size of the largest free block in memory.
-     * @return the size if the max available block.
+     * Compact only as much of the memory as needed to create a free block of the given size.
+     * @param bytes the size of the free block to create.
+     * @param policy how to choose the blocks to move.
+     * @return true if a free block of the given size exists after compaction, otherwise false.
      */
-    public int getMaxAvailableBlock() {
+    public boolean compact(long bytes, CompactionPolicy policy) {
+        return compact(bytes, policy, Extents.NONE, 0);
+    }
+
+    /**
+     * Compact only as much of the memory as needed to reallocate the earliest allocated block with the given id:
+     * either to create a free block of the new size, or a free block right after the block that covers its growth.
+     * Nothing is moved if the growth is more than the free memory.
+     * @param id of the block, which is allocated as by compact(bytes, policy) if it is not allocated.
+     * @param bytes the new size of the block.
+     * @param policy how to choose the blocks to move.
+     * @return true if there is room for the new size after compaction, otherwise false.
+     */
+    public boolean compactForReallocation(int id, long bytes, CompactionPolicy policy) {
+        int block = blocksById.get(id);
+        long growth = block == IntIntMap.MISSING ? bytes : bytes - extents.getSize(block);
+        if (growth > getTotalFreeMemory()) {
+            return false;
+        }
+        if (block == IntIntMap.MISSING) {
+            return compact(bytes, policy);
+        }
+        return compact(bytes, policy, block, growth);
+    }
+
+    /**
+     * Compact only as much of the memory as needed to create a free block of the given size,
+     * or a free block of the given growth right after the given block.
+     * @param bytes the size of the free block to create.
+     * @param policy how to choose the blocks to move.
+     * @param growBlock the block to grow, or Extents.NONE.
+     * @param growth the bytes the block grows by.
+     * @return true if either free block exists after compaction, otherwise false.
+     */
+    private boolean compact(long bytes, CompactionPolicy policy, int growBlock, long growth) {
 
-        // Find the largest gap between the end of a block and the start of the next one. 
-        int maxFreeBlock = 0;
-        int startFreeBlock = 0;
-        for (Block b : getSortedBlocks()) {
-            if (b.getStartAddress() - startFreeBlock >= maxFreeBlock) {
-                maxFreeBlock = b.getStartAddress() - startFreeBlock;
+        // The partial policies pack the blocks they move, which would break the alignment of the strategy.
+        if (policy == CompactionPolicy.FULL || allocationStrategy.alignsBlocks()) {
+            compact();
+            if (getMaxAvailableBlock() >= bytes) {
+                return true;
             }
-            startFreeBlock = b.getEndAddress() + 1;
+            int next = growBlock == Extents.NONE ? Extents.NONE : extents.getNextPhysical(growBlock);
+            return next != Extents.NONE && extents.isFree(next) && extents.getSize(next) >= growth;
         }
+        flushQuickLists();
+        movedBlocks = 0;
+        movedBytes = 0;
 
-        // If there is a free block at the end of memory, check if it is the largest.
-        if (capacity - startFreeBlock >= maxFreeBlock) {
-            maxFreeBlock = capacity - startFreeBlock;
+        // The allocated blocks in address order, and the sizes of the gaps before, between, and after them.
+        int[] compactedBlocks = new int[blockCount];
+        long[] gaps = new long[blockCount + 1];
+        long startAddress = 0;
+        int i = 0;
+        for (int extent = firstPhysical; extent != Extents.NONE; extent = extents.getNextPhysical(extent)) {
+            if (!extents.isFree(extent)) {
+                compactedBlocks[i] = extent;
+                gaps[i] = extents.getStartAddress(extent) - startAddress;
+                startAddress = extents.getEndAddress(extent) + 1;
+                i++;
+            }
+        }
+        gaps[blockCount] = capacity - startAddress;
+
+        // Moving blocks first + 1 to last towards the start of gap first joins gaps first to last.
+        // Find the run that creates a large enough free block while moving the fewest bytes.
+        int bestFirst = -1;
+        int bestLast = -1;
+        long bestBytes = Long.MAX_VALUE;
+        int first = 0;
+        long freeBytes = 0;
+        long runBytes = 0;
+        for (int last = 0; last <= blockCount; last++) {
+            freeBytes += gaps[last];
+            if (last > 0) {
+                runBytes += extents.getSize(compactedBlocks[last - 1]);
+            }
+            if (policy == CompactionPolicy.MINIMAL) {
+                while (first < last && freeBytes - gaps[first] >= bytes) {
+                    freeBytes -= gaps[first];
+                    first++;
+                    runBytes -= extents.getSize(compactedBlocks[first - 1]);
+                }
+            }
+            if (freeBytes >= bytes && runBytes < bestBytes) {
+                bestFirst = first;
+                bestLast = last;
+                bestBytes = runBytes;
+                if (policy == CompactionPolicy.SLIDE) {
+                    break;
+                }
+            }
+
+            // A run that ends with the block to grow leaves the free block right after it, which needs only the growth.
+            if (last > 0 && compactedBlocks[last - 1] == growBlock && freeBytes >= growth) {
+                int growFirst = first;
+                long growFreeBytes = freeBytes;
+                long growRunBytes = runBytes;
+                while (policy == CompactionPolicy.MINIMAL && growFirst < last && growFreeBytes - gaps[growFirst] >= growth) {
+                    growFreeBytes -= gaps[growFirst];
+                    growRunBytes -= extents.getSize(compactedBlocks[growFirst]);
+                    growFirst++;
+                }
+                if (growRunBytes < bestBytes) {
+                    bestFirst = growFirst;
+                    bestLast = last;
+                    bestBytes = growRunBytes;
+                    if (policy == CompactionPolicy.SLIDE) {
+                        break;
+                    }
+                }
+            }
         }
-        return maxFreeBlock;
+        if (bestFirst < 0) {
+            return false;
+        }
+
+        // Remove the gaps the run joins, then move the run and add the single free block after it.
+        for (i = bestFirst; i <= bestLast; i++) {
+            if (gaps[i] > 0) {
+                int gap = i == 0 ? firstPhysical : extents.getNextPhysical(compactedBlocks[i - 1]);
+                removeFreeBlock(gap);
+                unlinkPhysical(gap);
+                extents.remove(gap);
+            }
+        }
+        startAddress = bestFirst == 0 ? 0 : extents.getEndAddress(compactedBlocks[bestFirst - 1]) + 1;
+        for (i = bestFirst; i < bestLast; i++) {
+            int block = compactedBlocks[i];
+            if (extents.getStartAddress(block) != startAddress) {
+                moveBlock(block, startAddress);
+            }
+            startAddress += extents.getSize(block);
+        }
+        long endAddress = bestLast == blockCount ? capacity - 1 : extents.getStartAddress(compactedBlocks[bestLast]) - 1;
+        if (startAddress <= endAddress) {
+            int freeBlock = extents.add(-1, startAddress, endAddress, true);
+            insertPhysical(bestLast == 0 ? Extents.NONE : compactedBlocks[bestLast - 1], freeBlock);
+            addFreeBlock(freeBlock);
+        }
+        allocationStrategy.reset(this);
+        if (metrics != null) {
+            metrics.compaction(movedBlocks, movedBytes);
+        }
+        return true;
+    }
+
+    /**
+     * Move a block and its bytes to a lower address, and tell the allocation strategy.
+     * Blocks move towards address 0 in address order, so an overlapping copy never overwrites bytes still to move.
+     * @param block the block.
+     * @param startAddress the new start address.
+     */
+    private void moveBlock(int block, long startAddress) {
+        long oldStartAddress = extents.getStartAddress(block);
+        long size = extents.getSize(block);
+        movedBlocks++;
+        movedBytes += size;
+        if (storage != null) {
+            storage.put((int) startAddress, storage, (int) oldStartAddress, (int) size);
+        }
+        extents.setStartAddress(block, startAddress);
+        extents.setEndAddress(block, startAddress + size - 1);
+        allocationStrategy.moveBlock(oldStartAddress, startAddress, this);
+    }
+
+    /**
+     * Return a new view of an extent, with a view of its bytes in the storage if it is an allocated block.
+     * The view is stale, and throws when read, once the extent changes.
+     * @param extent the extent.
+     * @return the view.
+     */
+    private Block newBlock(int extent) {
+        Block block = new Block(extents.getId(extent), extents.getStartAddress(extent), extents.getEndAddress(extent));
+        block.setExtent(extents, extent);
+        if (storage != null && !extents.isFree(extent) && !extents.isCached(extent)) {
+            block.setBuffer(storage.slice((int) block.getStartAddress(), (int) block.getSize()));
+        }
+        return block;
+    }
+
+    /**
+     * Return the number of blocks moved by the last compaction.
+     * @return the number of moved blocks.
+     */
+    public int getMovedBlocks() {
+        return movedBlocks;
     }
 
     /**
-     * Return the free blocks in the memory.
-     * @return an ArrayList with the free blocks.
+     * Return the number of bytes moved by the last compaction.
+     * @return the number of moved bytes.
+     */
+    public long getMovedBytes() {
+        return movedBytes;
+    }
+
+    /**
+     * Return the size of the largest free block in memory, not counting cached blocks.
+     * If the strategy keeps its own free lists the free blocks are scanned.
+     * @return the size if the max available block.
+     */
+    public long getMaxAvailableBlock() {
+        if (freeBlocks != null) {
+            return freeBlocks.getMaxSize();
+        }
+        long maxSize = 0;
+        for (int extent = firstPhysical; extent != Extents.NONE; extent = extents.getNextPhysical(extent)) {
+            if (extents.isFree(extent)) {
+                maxSize = Math.max(maxSize, extents.getSize(extent));
+            }
+        }
+        return maxSize;
+    }
+
+    /**
+     * Return the free blocks in the memory, including the cached blocks, which are not coalesced.
+     * A single free byte at the end of memory is not reported as a free block.
+     * @return new views of the free blocks, sorted by start address.
      */
     public ArrayList<Block> getFreeBlocks() {
+        ArrayList<Block> copyFreeBlocks = new ArrayList<>(freeBlockCount);
+        for (int extent = firstPhysical; extent != Extents.NONE; extent = extents.getNextPhysical(extent)) {
+            if ((extents.isFree(extent) || extents.isCached(extent)) && !isHiddenFreeBlock(extent)) {
+                copyFreeBlocks.add(newBlock(extent));
+            }
+        }
+        return copyFreeBlocks;
+    }
+
+    /**
+     * Return the lowest address of a free block that can hold the given bytes.
+     * @param bytes the minimum size of the free block.
+     * @return the start address of the free block, or -1 if no free block is big enough.
+     */
+    public long findFirstFit(long bytes) {
+        return findFirstFit(0, bytes);
+    }
+
+    /**
+     * Return the lowest address, from the given address on, of a free block that can hold the given bytes.
+     * @param startAddress the lowest start address of the free block.
+     * @param bytes the minimum size of the free block.
+     * @return the start address of the free block, or -1 if no free block is big enough.
+     */
+    public long findFirstFit(long startAddress, long bytes) {
+        checkFreeBlockIndexes();
+        long visitedNodes = freeBlocks.getVisitedNodes();
+        int freeBlock = freeBlocks.findFirstFit(startAddress, bytes);
+        if (metrics != null) {
+            metrics.examine(freeBlocks.getVisitedNodes() - visitedNodes);
+        }
+
+        // The unreported free byte at the end of memory is the last free block.
+        if (freeBlock == Extents.NONE || isHiddenFreeBlock(freeBlock)) {
+            return -1;
+        }
+        return extents.getStartAddress(freeBlock);
+    }
+
+    /**
+     * Return the address of the smallest free block that can hold the given bytes.
+     * Among free blocks of the same size the one with the lowest address is returned.
+     * @param bytes the minimum size of the free block.
+     * @return the start address of the free block, or -1 if no free block is big enough.
+     */
+    public long findBestFit(long bytes) {
+        checkFreeBlockIndexes();
+        long comparisons = freeBlocksBySize.getComparisons();
+        int freeBlock = freeBlocksBySize.ceiling(bytes);
+        while (freeBlock != Extents.NONE && isHiddenFreeBlock(freeBlock)) {
+            freeBlock = freeBlocksBySize.higher(freeBlock);
+        }
+        if (metrics != null) {
+            metrics.examine(freeBlocksBySize.getComparisons() - comparisons);
+        }
+        return freeBlock == Extents.NONE ? -1 : extents.getStartAddress(freeBlock);
+    }
+
+    /**
+     * Return the size of the largest reported free block in memory.
+     * @return the size, or 0 if memory has no free blocks.
+     */
+    public long getLargestFreeBlockSize() {
+        checkFreeBlockIndexes();
+        long comparisons = freeBlocksBySize.getComparisons();
+        int freeBlock = freeBlocksBySize.last();
+        while (freeBlock != Extents.NONE && isHiddenFreeBlock(freeBlock)) {
+            freeBlock = freeBlocksBySize.lower(freeBlock);
+        }
+        if (metrics != null) {
+            metrics.examine(freeBlocksBySize.getComparisons() - comparisons + 1);
+        }
+        return freeBlock == Extents.NONE ? 0 : extents.getSize(freeBlock);
+    }
+
+    /**
+     * Check that the free blocks are indexed for searching, which they are not if the strategy keeps its own free lists.
+     */
+    private void checkFreeBlockIndexes() {
+        if (freeBlocks == null) {
+            throw new IllegalStateException("Free blocks are not indexed for " + allocationStrategy.getStrategy());
+        }
+    }
+
+    /**
+     * Return the free block that contains the given address. If the strategy keeps its own free lists
+     * only a free block that starts at the address is found.
+     * @param address the address.
+     * @return the free block, or NONE if there is none.
+     */
+    private int findFreeBlock(long address) {
+        if (freeBlocks != null) {
+            return freeBlocks.floor(address);
+        }
+        long freeBlock = freeBlocksByStart.get(address);
+        return freeBlock == LongLongMap.MISSING ? Extents.NONE : (int) freeBlock;
+    }
+
+    /**
+     * Check if a free block is the single free byte at the end of memory.
+     * @param freeBlock the free block.
+     * @return true if the free block is not reported, otherwise false.
+     */
+    private boolean isHiddenFreeBlock(int freeBlock) {
+        return extents.getStartAddress(freeBlock) >= capacity - 1;
+    }
+
+    /**
+     * Add a free block to the free block indexes.
+     * @param freeBlock the free block.
+     */
+    private void addFreeBlock(int freeBlock) {
+        if (freeBlocks != null) {
+            freeBlocks.add(freeBlock);
+        } else {
+            freeBlocksByStart.put(extents.getStartAddress(freeBlock), freeBlock);
+        }
+        addFreeBlockSize(freeBlock);
+    }
 
-        // Find free blocks between the end of a block and the start of the next.
-        ArrayList<Block> freeBlocks = new ArrayList<>();
-        int startAdress = 0;
-        for (Block block : getSortedBlocks()) {
-            if (startAdress < block.getStartAddress()) {
-                freeBlocks.add(new Block(-1, startAdress, block.getStartAddress() - 1));
+    /**
+     * Remove a free block from the free block indexes.
+     * @param freeBlock the free block.
+     */
+    private void removeFreeBlock(int freeBlock) {
+        if (freeBlocks != null) {
+            freeBlocks.remove(freeBlock);
+        } else {
+            freeBlocksByStart.remove(extents.getStartAddress(freeBlock));
+        }
+        removeFreeBlockSize(freeBlock);
+    }
+
+    /**
+     * Move the start of a free block up, which keeps its place among the free blocks by address.
+     * @param freeBlock the free block.
+     * @param startAddress the new start address, not past its end.
+     */
+    private void moveFreeBlockStart(int freeBlock, long startAddress) {
+        removeFreeBlockSize(freeBlock);
+        if (freeBlocks != null) {
+            extents.setStartAddress(freeBlock, startAddress);
+            freeBlocks.refresh(freeBlock);
+        } else {
+            freeBlocksByStart.remove(extents.getStartAddress(freeBlock));
+            extents.setStartAddress(freeBlock, startAddress);
+            freeBlocksByStart.put(startAddress, freeBlock);
+        }
+        addFreeBlockSize(freeBlock);
+    }
+
+    /**
+     * Add a free block to the size index and the free space statistics.
+     * @param freeBlock the free block.
+     */
+    private void addFreeBlockSize(int freeBlock) {
+        if (freeBlocksBySize != null) {
+            freeBlocksBySize.add(freeBlock);
+        }
+        if (!isHiddenFreeBlock(freeBlock)) {
+            freeMemory += extents.getSize(freeBlock);
+            freeBlockCount++;
+        }
+    }
+
+    /**
+     * Remove a free block from the size index and the free space statistics.
+     * @param freeBlock the free block.
+     */
+    private void removeFreeBlockSize(int freeBlock) {
+        if (freeBlocksBySize != null) {
+            freeBlocksBySize.remove(freeBlock);
+        }
+        if (!isHiddenFreeBlock(freeBlock)) {
+            freeMemory -= extents.getSize(freeBlock);
+            freeBlockCount--;
+        }
+    }
+
+    /**
+     * Turn a deallocated block into a free block, coalescing it with its neighbours.
+     * @param block the block, already removed from the allocation order.
+     */
+    private void releaseFreeBlock(int block) {
+        long startAddress = extents.getStartAddress(block);
+        long endAddress = extents.getEndAddress(block);
+        int previous = extents.getPreviousPhysical(block);
+        if (previous != Extents.NONE && extents.isFree(previous)) {
+            startAddress = extents.getStartAddress(previous);
+            removeFreeBlock(previous);
+            unlinkPhysical(previous);
+            extents.remove(previous);
+            if (metrics != null) {
+                metrics.coalesce();
+            }
+        }
+        int next = extents.getNextPhysical(block);
+        if (next != Extents.NONE && extents.isFree(next)) {
+            endAddress = extents.getEndAddress(next);
+            removeFreeBlock(next);
+            unlinkPhysical(next);
+            extents.remove(next);
+            if (metrics != null) {
+                metrics.coalesce();
             }
-            startAdress = block.getEndAddress() + 1;
         }
+        extents.setStartAddress(block, startAddress);
+        extents.setEndAddress(block, endAddress);
+        extents.setFree(block, true);
+        extents.setNextSameId(block, Extents.NONE);
+        addFreeBlock(block);
+    }
 
-        // Check if the block ending at the highest adress in memory is free.
-        if (startAdress < capacity - 1) {
-            Block freeBlock = new Block(-1);
-                freeBlock.allocate(startAdress, capacity - 1);
-                freeBlocks.add(freeBlock);
+    /**
+     * Link an extent into the address order.
+     * @param previous the extent before it, or NONE to make it the first.
+     * @param extent the extent.
+     */
+    private void insertPhysical(int previous, int extent) {
+        int next = previous == Extents.NONE ? firstPhysical : extents.getNextPhysical(previous);
+        extents.linkPhysical(previous, extent);
+        extents.linkPhysical(extent, next);
+        if (previous == Extents.NONE) {
+            firstPhysical = extent;
+        }
+    }
+
+    /**
+     * Unlink an extent from the address order.
+     * @param extent the extent.
+     */
+    private void unlinkPhysical(int extent) {
+        int previous = extents.getPreviousPhysical(extent);
+        int next = extents.getNextPhysical(extent);
+        extents.linkPhysical(previous, next);
+        if (previous == Extents.NONE) {
+            firstPhysical = next;
+        }
+    }
+
+    /**
+     * Rebuild the free blocks from the gaps between the allocated blocks.
+     */
+    private void rebuildFreeBlocks() {
+        if (freeBlocks != null) {
+            freeBlocks.clear();
+            freeBlocksBySize.clear();
+        } else {
+            freeBlocksByStart.clear();
+        }
+        freeMemory = 0;
+        freeBlockCount = 0;
+        long startAdress = 0;
+        int previous = Extents.NONE;
+        int extent = firstPhysical;
+        while (extent != Extents.NONE) {
+            int next = extents.getNextPhysical(extent);
+            if (extents.isFree(extent)) {
+                unlinkPhysical(extent);
+                extents.remove(extent);
+            } else {
+                if (startAdress < extents.getStartAddress(extent)) {
+                    int freeBlock = extents.add(-1, startAdress, extents.getStartAddress(extent) - 1, true);
+                    insertPhysical(previous, freeBlock);
+                    addFreeBlock(freeBlock);
+                }
+                startAdress = extents.getEndAddress(extent) + 1;
+                previous = extent;
+            }
+            extent = next;
+        }
+        if (startAdress < capacity) {
+            int freeBlock = extents.add(-1, startAdress, capacity - 1, true);
+            insertPhysical(previous, freeBlock);
+            addFreeBlock(freeBlock);
         }
-        return freeBlocks;
     }
 
     /**
      * Return the size of total free memory.
      * @return total free memory.
      */
-    private int getTotalFreeMemory() {
-        int totalFreeMemory = 0;
-        for (Block freeBlock : getFreeBlocks()) {
-            totalFreeMemory += freeBlock.getSize();
-        }
-        return totalFreeMemory;
+    public long getTotalFreeMemory() {
+        return freeMemory;
+    }
+
+    /**
+     * Return the number of free blocks in memory.
+     * @return the number of free blocks.
+     */
+    public int getFreeBlockCount() {
+        return freeBlockCount;
     }
 
     /**
@@ -203,6 +1327,22 @@ public class Memory {
         return 1.0 - (double) getMaxAvailableBlock() / getTotalFreeMemory();
     }
     
+    /**
+     * Check if the allocation strategy reports internal fragmentation.
+     * @return true if it does, otherwise false.
+     */
+    public boolean hasInternalFragmentation() {
+        return allocationStrategy.hasInternalFragmentation();
+    }
+
+    /**
+     * Return the internal fragmentation of the allocation strategy.
+     * @return the internal fragmentation.
+     */
+    public double getInternalFragmentation() {
+        return allocationStrategy.getInternalFragmentation();
+    }
+
     /**
      * Return the name of the allocation strategy.
      * @return the allocation strategy.
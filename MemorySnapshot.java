@@ -0,0 +1,168 @@
+import java.util.ArrayList;
+import java.util.Iterator;
+
+public class MemorySnapshot {
+
+    private String strategy;
+    private long capacity;
+    private Extents extents;
+    private int firstAllocated;
+    private int firstPhysical;
+    private int freeBlockCount;
+    private double fragmentation;
+    private boolean hasInternalFragmentation;
+    private double internalFragmentation;
+    private long inPlaceReallocations;
+    private long relocations;
+    private TextLog compactions;
+    private TextLog errors;
+
+    /**
+     * Constructor, for the state of a memory that later changes to the memory do not affect.
+     * @param memory the memory.
+     * @param extents a snapshot of the memory's extents.
+     * @param firstAllocated the earliest allocated block, or NONE.
+     * @param firstPhysical the extent at the lowest address, or NONE.
+     */
+    public MemorySnapshot(Memory memory, Extents extents, int firstAllocated, int firstPhysical) {
+        strategy = memory.getStrategy();
+        capacity = memory.getCapacity();
+        this.extents = extents;
+        this.firstAllocated = firstAllocated;
+        this.firstPhysical = firstPhysical;
+        freeBlockCount = memory.getFreeBlockCount();
+        fragmentation = memory.getFragmentation();
+        hasInternalFragmentation = memory.hasInternalFragmentation();
+        internalFragmentation = memory.getInternalFragmentation();
+        inPlaceReallocations = memory.getInPlaceReallocations();
+        relocations = memory.getRelocations();
+    }
+
+    /**
+     * Add the logs of the executor to the snapshot.
+     * @param errors a snapshot of the errors.
+     * @param compactions a snapshot of the compactions, or null if they are not reported.
+     */
+    public void setLogs(TextLog errors, TextLog compactions) {
+        this.errors = errors;
+        this.compactions = compactions;
+    }
+
+    /**
+     * Return the name of the allocation strategy.
+     * @return the allocation strategy.
+     */
+    public String getStrategy() {
+        return strategy;
+    }
+
+    /**
+     * Return the allocated blocks in allocation order.
+     * @return the blocks, each created when it is reached.
+     */
+    public Iterable<Block> getBlocks() {
+        return () -> new Iterator<Block>() {
+            private int block = firstAllocated;
+
+            @Override
+            public boolean hasNext() {
+                return block != Extents.NONE;
+            }
+
+            @Override
+            public Block next() {
+                Block next = new Block(extents.getId(block), extents.getStartAddress(block), extents.getEndAddress(block));
+                block = extents.getNextAllocated(block);
+                return next;
+            }
+        };
+    }
+
+    /**
+     * Check if no blocks were allocated.
+     * @return true if memory was empty, otherwise false.
+     */
+    public boolean isEmpty() {
+        return firstAllocated == Extents.NONE;
+    }
+
+    /**
+     * Return the free blocks sorted by start address.
+     * A single free byte at the end of memory is not reported as a free block.
+     * @return the free blocks.
+     */
+    public ArrayList<Block> getFreeBlocks() {
+        ArrayList<Block> reportedFreeBlocks = new ArrayList<>(freeBlockCount);
+        for (int extent = firstPhysical; extent != Extents.NONE; extent = extents.getNextPhysical(extent)) {
+            if ((extents.isFree(extent) || extents.isCached(extent)) && extents.getStartAddress(extent) < capacity - 1) {
+                reportedFreeBlocks.add(new Block(-1, extents.getStartAddress(extent), extents.getEndAddress(extent)));
+            }
+        }
+        return reportedFreeBlocks;
+    }
+
+    /**
+     * Return the number of reported free blocks.
+     * @return the number of free blocks.
+     */
+    public int getFreeBlockCount() {
+        return freeBlockCount;
+    }
+
+    /**
+     * Return the fragmentation.
+     * @return the fragmentation.
+     */
+    public double getFragmentation() {
+        return fragmentation;
+    }
+
+    /**
+     * Check if the allocation strategy reports internal fragmentation.
+     * @return true if it does, otherwise false.
+     */
+    public boolean hasInternalFragmentation() {
+        return hasInternalFragmentation;
+    }
+
+    /**
+     * Return the internal fragmentation of the allocation strategy.
+     * @return the internal fragmentation.
+     */
+    public double getInternalFragmentation() {
+        return internalFragmentation;
+    }
+
+    /**
+     * Return the number of reallocations that resized the block in place.
+     * @return the number of reallocations.
+     */
+    public long getInPlaceReallocations() {
+        return inPlaceReallocations;
+    }
+
+    /**
+     * Return the number of reallocations that moved the block to a new address.
+     * @return the number of reallocations.
+     */
+    public long getRelocations() {
+        return relocations;
+    }
+
+    /**
+     * Return the compactions, one per line with the instruction, blocks moved and bytes moved.
+     * @return the compactions, or null if they are not reported.
+     */
+    public TextLog getCompactions() {
+        return compactions;
+    }
+
+    /**
+     * Return the errors.
+     * @return the errors.
+     */
+    public TextLog getErrors() {
+        return errors;
+    }
+
+}
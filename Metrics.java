@@ -0,0 +1,238 @@
+public class Metrics {
+
+    private Histogram[] latencies;
+    private Histogram examinedFreeBlocks;
+    // Free blocks examined by the allocation in progress.
+    private long examined;
+    private long splits;
+    private long coalesces;
+    private long strategySplits;
+    private long strategyCoalesces;
+    private long compactions;
+    private long movedBlocks;
+    private long movedBytes;
+    private long quickListHits;
+    private long quickListMisses;
+    private long quickListEvictions;
+    private long quickListFlushes;
+
+    /**
+     * Constructor.
+     */
+    public Metrics() {
+
+        // One latency histogram per trace command (A, D, C, O and R), indexed like TraceReader's commands.
+        latencies = new Histogram[TraceReader.REALLOCATE + 1];
+        for (int command = 0; command < latencies.length; command++) {
+            latencies[command] = new Histogram();
+        }
+        examinedFreeBlocks = new Histogram();
+    }
+
+    /**
+     * Record the time taken by an instruction.
+     * @param command of the instruction, one of TraceReader's commands.
+     * @param nanos the time taken in nanoseconds.
+     */
+    public void recordLatency(int command, long nanos) {
+        latencies[command].record(nanos);
+    }
+
+    /**
+     * Start counting the free blocks examined by an allocation.
+     */
+    public void startAllocation() {
+        examined = 0;
+    }
+
+    /**
+     * Count free blocks examined by the allocation in progress.
+     * @param freeBlocks the number of free blocks (or search tree nodes) examined.
+     */
+    public void examine(long freeBlocks) {
+        examined += freeBlocks;
+    }
+
+    /**
+     * Record the number of free blocks examined by the allocation in progress.
+     */
+    public void endAllocation() {
+        examinedFreeBlocks.record(examined);
+    }
+
+    /**
+     * Count a free block of memory split by an allocation.
+     */
+    public void split() {
+        splits++;
+    }
+
+    /**
+     * Count a free block of memory coalesced with a deallocated block.
+     */
+    public void coalesce() {
+        coalesces++;
+    }
+
+    /**
+     * Count splits of the strategy's own free blocks.
+     * @param count the number of splits.
+     */
+    public void strategySplits(int count) {
+        strategySplits += count;
+    }
+
+    /**
+     * Count coalesces of the strategy's own free blocks.
+     * @param count the number of coalesces.
+     */
+    public void strategyCoalesces(int count) {
+        strategyCoalesces += count;
+    }
+
+    /**
+     * Record a compaction.
+     * @param movedBlocks the number of blocks moved.
+     * @param movedBytes the number of bytes moved.
+     */
+    public void compaction(int movedBlocks, long movedBytes) {
+        compactions++;
+        this.movedBlocks += movedBlocks;
+        this.movedBytes += movedBytes;
+    }
+
+    /**
+     * Count an allocation served by a quick list.
+     */
+    public void quickListHit() {
+        quickListHits++;
+    }
+
+    /**
+     * Count an allocation that found no cached block of its size.
+     */
+    public void quickListMiss() {
+        quickListMisses++;
+    }
+
+    /**
+     * Count a cached block evicted from a full quick list.
+     */
+    public void quickListEviction() {
+        quickListEvictions++;
+    }
+
+    /**
+     * Count cached blocks flushed from the quick lists by a failed allocation or a compaction.
+     * @param count the number of blocks.
+     */
+    public void quickListFlushes(int count) {
+        quickListFlushes += count;
+    }
+
+    /**
+     * Return the latency histogram of a command.
+     * @param command one of TraceReader's commands.
+     * @return the latencies in nanoseconds.
+     */
+    public Histogram getLatencies(int command) {
+        return latencies[command];
+    }
+
+    /**
+     * Return the histogram of the free blocks examined per allocation.
+     * @return the histogram.
+     */
+    public Histogram getExaminedFreeBlocks() {
+        return examinedFreeBlocks;
+    }
+
+    /**
+     * Return the number of free blocks of memory split by allocations.
+     * @return the number.
+     */
+    public long getSplits() {
+        return splits;
+    }
+
+    /**
+     * Return the number of free blocks of memory coalesced with deallocated blocks.
+     * @return the number.
+     */
+    public long getCoalesces() {
+        return coalesces;
+    }
+
+    /**
+     * Return the number of splits of the strategy's own free blocks.
+     * @return the number.
+     */
+    public long getStrategySplits() {
+        return strategySplits;
+    }
+
+    /**
+     * Return the number of coalesces of the strategy's own free blocks.
+     * @return the number.
+     */
+    public long getStrategyCoalesces() {
+        return strategyCoalesces;
+    }
+
+    /**
+     * Return the number of compactions.
+     * @return the number.
+     */
+    public long getCompactions() {
+        return compactions;
+    }
+
+    /**
+     * Return the number of blocks moved by all compactions.
+     * @return the number.
+     */
+    public long getMovedBlocks() {
+        return movedBlocks;
+    }
+
+    /**
+     * Return the number of bytes moved by all compactions.
+     * @return the number.
+     */
+    public long getMovedBytes() {
+        return movedBytes;
+    }
+
+    /**
+     * Return the number of allocations served by a quick list.
+     * @return the number.
+     */
+    public long getQuickListHits() {
+        return quickListHits;
+    }
+
+    /**
+     * Return the number of allocations that found no cached block of their size.
+     * @return the number.
+     */
+    public long getQuickListMisses() {
+        return quickListMisses;
+    }
+
+    /**
+     * Return the number of cached blocks evicted from full quick lists.
+     * @return the number.
+     */
+    public long getQuickListEvictions() {
+        return quickListEvictions;
+    }
+
+    /**
+     * Return the number of cached blocks flushed by failed allocations and compactions.
+     * @return the number.
+     */
+    public long getQuickListFlushes() {
+        return quickListFlushes;
+    }
+
+}
@@ -0,0 +1,59 @@
+import java.io.IOException;
+
+public class NextFit implements AllocationStrategy {
+
+    private long nextAddress;
+
+    @Override
+    public boolean allocateBlock(int id, long bytes, Memory memory) {
+
+        // If memory is empty alocate the block at the lowest address.
+        if (memory.isEmpty()) {
+            memory.addBlock(id, 0, bytes - 1);
+            nextAddress = bytes;
+            return true;
+        }
+
+        // Allocate the first fitting free block after the previous allocation.
+        long startAddress = memory.findFirstFit(nextAddress, bytes);
+
+        // If none is found wrap around to the start of memory.
+        if (startAddress < 0) {
+            startAddress = memory.findFirstFit(bytes);
+        }
+
+        // If no free block found return false.
+        if (startAddress < 0) {
+            return false;
+        }
+
+        // Otherwise allocate the block, remember where it ends and retun true.
+        memory.addBlock(id, startAddress, startAddress + bytes - 1);
+        nextAddress = startAddress + bytes;
+        return true;
+
+    }
+
+    @Override
+    public void reset(Memory memory) {
+
+        // Blocks may have moved, so go on after the last allocated block where it is now, or from the start.
+        nextAddress = memory.getLastAllocatedEndAddress() + 1;
+    }
+
+    @Override
+    public void writeState(Checkpoint checkpoint, Memory memory) throws IOException {
+        checkpoint.putLong(nextAddress);
+    }
+
+    @Override
+    public void readState(Checkpoint checkpoint, Memory memory) throws IOException {
+        nextAddress = checkpoint.getLong();
+    }
+
+    @Override
+    public String getStrategy() {
+        return "Next fit";
+    }
+
+}
@@ -0,0 +1,63 @@
+import java.util.concurrent.ArrayBlockingQueue;
+
+public class OutputWriter {
+
+    // Pending outputs are bounded, so a slow disk holds back execution instead of filling the heap with snapshots.
+    private static final int QUEUE_CAPACITY = 256;
+    private static final Runnable STOP = () -> { };
+
+    private ArrayBlockingQueue<Runnable> tasks;
+    private Thread thread;
+
+    /**
+     * Constructor, starts the writer thread.
+     */
+    public OutputWriter() {
+        tasks = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        thread = new Thread(this::run, "output-writer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Run a task on the writer thread after the tasks submitted before it, waiting if too many are pending.
+     * @param task the task.
+     */
+    public void submit(Runnable task) {
+        try {
+            tasks.put(task);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Wait for the submitted tasks to finish and stop the writer thread.
+     */
+    public void close() {
+        submit(STOP);
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void run() {
+        try {
+            Runnable task;
+            while ((task = tasks.take()) != STOP) {
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
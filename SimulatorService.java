@@ -0,0 +1,173 @@
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.function.Supplier;
+
+public class SimulatorService {
+
+    private Supplier<ArrayList<CommandExecutor>> executorFactory;
+    private IOFile ioFile;
+
+    /**
+     * Constructor.
+     * @param executorFactory creates the executors of the strategies, with new memories, for each session.
+     * @param ioFile for formatting the O reports.
+     */
+    public SimulatorService(Supplier<ArrayList<CommandExecutor>> executorFactory, IOFile ioFile) {
+        this.executorFactory = executorFactory;
+        this.ioFile = ioFile;
+    }
+
+    /**
+     * Accept sessions on a local socket until the process is stopped, each on its own thread.
+     * @param address a port number for TCP on the loopback address, otherwise the path of a Unix domain socket.
+     * @throws IOException if the socket cannot be opened.
+     */
+    public void listen(String address) throws IOException {
+        SocketAddress socketAddress;
+        ServerSocketChannel server;
+        if (address.matches("\\d+")) {
+            socketAddress = new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(address));
+            server = ServerSocketChannel.open(StandardProtocolFamily.INET);
+        } else {
+            socketAddress = UnixDomainSocketAddress.of(address);
+            server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        }
+        try {
+            server.bind(socketAddress);
+            if (socketAddress instanceof UnixDomainSocketAddress) {
+                new File(address).deleteOnExit();
+            }
+            while (true) {
+                SocketChannel connection = server.accept();
+                if (socketAddress instanceof InetSocketAddress) {
+                    connection.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                }
+                Thread session = new Thread(() -> {
+                    try (SocketChannel channel = connection) {
+                        serve(Channels.newInputStream(channel), Channels.newOutputStream(channel));
+                    } catch (IOException | RuntimeException e) {
+                        e.printStackTrace();
+                    }
+                }, "session");
+                session.start();
+            }
+        } finally {
+            server.close();
+        }
+    }
+
+    /**
+     * Run one session: read the capacity and then instructions from the input, and answer each instruction
+     * on the output as soon as it is executed.
+     * For each strategy an instruction is answered with its error line as in the output file, or with "ok"
+     * (followed by ";" and the start address of the block for A and R), and O with the report of the strategy.
+     * An instruction that cannot be parsed is answered with "error;" and its line number for each strategy,
+     * and reading goes on with the next line. An invalid capacity is answered once and ends the session.
+     * Answers are flushed whenever no more input has arrived, and the session waits while the output is not read.
+     * @param input the instructions, in the format of the input file.
+     * @param output where the answers are written.
+     * @throws IOException if the input cannot be read or the output written.
+     */
+    public void serve(InputStream input, OutputStream output) throws IOException {
+        StreamByteReader reader = new StreamByteReader(input);
+        Writer answers = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.US_ASCII), 1 << 16);
+        TextTraceReader trace;
+        try {
+            trace = new TextTraceReader(reader);
+        } catch (NumberFormatException e) {
+            answers.append("error;1\n").flush();
+            return;
+        }
+
+        // Each session has its own memories.
+        ArrayList<CommandExecutor> commandExecutors = executorFactory.get();
+        for (CommandExecutor commandExecutor : commandExecutors) {
+            commandExecutor.getMemory().setCapacity(trace.getCapacity());
+        }
+
+        int instructionNumber = 1;
+        while (true) {
+            boolean valid = true;
+            try {
+                if (!trace.next()) {
+                    break;
+                }
+            } catch (NumberFormatException e) {
+                trace.skipInvalidLine();
+                valid = false;
+            }
+            for (CommandExecutor commandExecutor : commandExecutors) {
+                if (valid) {
+                    execute(commandExecutor, instructionNumber, trace, answers);
+                } else {
+                    answers.append("error;").append(Integer.toString(instructionNumber)).append('\n');
+                }
+            }
+            if (!reader.hasBufferedInput()) {
+                answers.flush();
+            }
+            instructionNumber++;
+        }
+        answers.flush();
+    }
+
+    /**
+     * Execute the current instruction of the trace for a strategy and write its answer.
+     * @param commandExecutor the executor of the strategy.
+     * @param instructionNumber the instruction's line number.
+     * @param trace positioned at the instruction.
+     * @param answers where the answer is written.
+     * @throws IOException if the answer cannot be written.
+     */
+    private void execute(CommandExecutor commandExecutor, int instructionNumber, TraceReader trace, Writer answers)
+            throws IOException {
+        Memory memory = commandExecutor.getMemory();
+        int errorsLength = commandExecutor.getErrors().length();
+        long address = -1;
+        switch (trace.getCommand()) {
+            case TraceReader.ALLOCATE:
+                commandExecutor.allocate(instructionNumber, trace.getId(), trace.getBytes());
+                address = memory.getLastAllocatedAddress();
+                break;
+            case TraceReader.DEALLOCATE:
+                commandExecutor.deallocate(instructionNumber, trace.getId());
+                break;
+            case TraceReader.COMPACT:
+                commandExecutor.compact(instructionNumber);
+                break;
+            case TraceReader.OUTPUT:
+                ioFile.writeOutputForStrategy(commandExecutor.snapshot(), answers);
+                return;
+            case TraceReader.REALLOCATE:
+                commandExecutor.reallocate(instructionNumber, trace.getId(), trace.getBytes());
+                address = memory.getStartAddress(trace.getId());
+        }
+
+        // A failed instruction added its error line.
+        CharSequence errors = commandExecutor.getErrors();
+        if (errors.length() > errorsLength) {
+            answers.append(errors, errorsLength, errors.length());
+        } else if (address >= 0) {
+            answers.append("ok;").append(Long.toString(address)).append('\n');
+        } else {
+            answers.append("ok\n");
+        }
+    }
+
+}
@@ -0,0 +1,55 @@
+import java.io.IOException;
+import java.io.InputStream;
+
+public class StreamByteReader implements ByteReader {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private InputStream input;
+    private byte[] buffer;
+    private int position;
+    private int limit;
+
+    /**
+     * Constructor.
+     * @param input the stream, read in chunks of whatever has arrived so far.
+     */
+    public StreamByteReader(InputStream input) {
+        this.input = input;
+        buffer = new byte[BUFFER_SIZE];
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (position == limit) {
+
+            // Wait only for the first byte, the rest of the buffer takes what has already arrived.
+            int count = input.read(buffer, 0, buffer.length);
+            if (count <= 0) {
+                return END_OF_FILE;
+            }
+            position = 0;
+            limit = count;
+        }
+        return buffer[position++] & 0xFF;
+    }
+
+    @Override
+    public void unread() {
+        position--;
+    }
+
+    /**
+     * Check if bytes have been read from the stream that were not returned yet.
+     * @return true if the next read does not wait for the stream, otherwise false.
+     */
+    public boolean hasBufferedInput() {
+        return position < limit;
+    }
+
+    @Override
+    public void close() throws IOException {
+        input.close();
+    }
+
+}
@@ -0,0 +1,106 @@
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.util.Arrays;
+
+public class TextLog implements CharSequence {
+
+    // Text is kept in chunks that are never moved, so a snapshot can share them with the log.
+    private static final int CHUNK_BITS = 12;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+
+    private char[][] chunks;
+    private int length;
+
+    /**
+     * Constructor, for an empty log.
+     */
+    public TextLog() {
+        chunks = new char[1][];
+    }
+
+    /**
+     * Append text to the log.
+     * @param text the text.
+     * @return this log.
+     */
+    public TextLog append(CharSequence text) {
+        for (int i = 0; i < text.length(); i++) {
+            append(text.charAt(i));
+        }
+        return this;
+    }
+
+    /**
+     * Append a character to the log.
+     * @param c the character.
+     * @return this log.
+     */
+    public TextLog append(char c) {
+        int chunk = length >>> CHUNK_BITS;
+        if (chunk == chunks.length) {
+            chunks = Arrays.copyOf(chunks, chunk * 2);
+        }
+        if (chunks[chunk] == null) {
+            chunks[chunk] = new char[CHUNK_SIZE];
+        }
+        chunks[chunk][length & (CHUNK_SIZE - 1)] = c;
+        length++;
+        return this;
+    }
+
+    /**
+     * Append a number to the log.
+     * @param value the number.
+     * @return this log.
+     */
+    public TextLog append(long value) {
+        return append(Long.toString(value));
+    }
+
+    /**
+     * Return a copy of the log in constant time, which later appends do not affect.
+     * @return the copy.
+     */
+    public TextLog snapshot() {
+        TextLog snapshot = new TextLog();
+        snapshot.chunks = chunks;
+        snapshot.length = length;
+        return snapshot;
+    }
+
+    /**
+     * Write the log without copying it to a string.
+     * @param output where the log is written.
+     * @throws IOException if the log cannot be written.
+     */
+    public void writeTo(Appendable output) throws IOException {
+        for (int start = 0; start < length; start += CHUNK_SIZE) {
+            output.append(CharBuffer.wrap(chunks[start >>> CHUNK_BITS]), 0, Math.min(CHUNK_SIZE, length - start));
+        }
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        return chunks[index >>> CHUNK_BITS][index & (CHUNK_SIZE - 1)];
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        StringBuilder text = new StringBuilder(end - start);
+        for (int i = start; i < end; i++) {
+            text.append(charAt(i));
+        }
+        return text.toString();
+    }
+
+    @Override
+    public String toString() {
+        return subSequence(0, length).toString();
+    }
+
+}
@@ -0,0 +1,216 @@
+import java.io.IOException;
+
+public class TextTraceReader implements TraceReader {
+
+    private static final int END_OF_FILE = ByteReader.END_OF_FILE;
+
+    private ByteReader file;
+    private long capacity;
+    private int lineNumber;
+    private int command;
+    private int id;
+    private long bytes;
+    // The character that ended the last parsed number, or the last character read before an invalid one.
+    private int terminator;
+
+    /**
+     * Constructor, reads the capacity from the first line of the file.
+     * @param path of the input file.
+     * @throws IOException if the file cannot be read.
+     */
+    public TextTraceReader(String path) throws IOException {
+        MappedFileReader mappedFile = new MappedFileReader(path);
+        if (mappedFile.getFileSize() == 0) {
+            mappedFile.close();
+            throw new IOException("Missing capacity in " + path);
+        }
+        file = mappedFile;
+        readCapacity();
+    }
+
+    /**
+     * Constructor, reads the capacity from the first line of the input, waiting for it if needed.
+     * Each instruction is read as soon as its line has arrived, so the input can be a stream that stays open.
+     * @param input the bytes of the trace.
+     * @throws IOException if the input cannot be read.
+     */
+    public TextTraceReader(ByteReader input) throws IOException {
+        file = input;
+        readCapacity();
+    }
+
+    private void readCapacity() throws IOException {
+        lineNumber = 1;
+        capacity = readNumber();
+        if (!isEndOfLine(terminator)) {
+            throw invalid("Invalid capacity on line 1", terminator);
+        }
+        skipLine(terminator);
+    }
+
+    @Override
+    public long getCapacity() {
+        return capacity;
+    }
+
+    @Override
+    public boolean next() throws IOException {
+        int c = read();
+        if (c == END_OF_FILE) {
+            return false;
+        }
+        lineNumber++;
+
+        // Read the command, which must be a single character followed by ';' or the end of the line.
+        int first = c;
+        int length = 0;
+        while (c != ';' && !isEndOfLine(c)) {
+            length++;
+            c = read();
+        }
+        command = length == 1 ? getCommand(first) : UNKNOWN;
+
+        // Read the parameters of the command.
+        if (command == ALLOCATE || command == REALLOCATE) {
+            expectParameter(c);
+            id = readId();
+            expectParameter(terminator);
+            bytes = readNumber();
+            c = terminator;
+        } else if (command == DEALLOCATE) {
+            expectParameter(c);
+            id = readId();
+            c = terminator;
+        }
+        skipLine(c);
+        return true;
+    }
+
+    /**
+     * Skip the rest of a line for which next() threw a NumberFormatException, so that reading can go on with the next line.
+     * @throws IOException if the file cannot be read.
+     */
+    public void skipInvalidLine() throws IOException {
+        skipLine(terminator);
+    }
+
+    @Override
+    public int getCommand() {
+        return command;
+    }
+
+    @Override
+    public int getId() {
+        return id;
+    }
+
+    @Override
+    public long getBytes() {
+        return bytes;
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+
+    private static int getCommand(int c) {
+        switch (c) {
+            case 'A':
+                return ALLOCATE;
+            case 'D':
+                return DEALLOCATE;
+            case 'C':
+                return COMPACT;
+            case 'O':
+                return OUTPUT;
+            case 'R':
+                return REALLOCATE;
+            default:
+                return UNKNOWN;
+        }
+    }
+
+    private static boolean isEndOfLine(int c) {
+        return c == '\n' || c == '\r' || c == END_OF_FILE;
+    }
+
+    private void expectParameter(int c) {
+        if (c != ';') {
+            throw invalid("Missing parameter on line " + lineNumber, c);
+        }
+    }
+
+    /**
+     * Read a block id, a decimal number in the range of int ending with ';' or the end of the line.
+     * @return the id.
+     */
+    private int readId() throws IOException {
+        long value = readNumber();
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            throw invalid("Number out of range on line " + lineNumber, terminator);
+        }
+        return (int) value;
+    }
+
+    /**
+     * Read a decimal number ending with ';' or the end of the line.
+     * @return the number.
+     */
+    private long readNumber() throws IOException {
+        int c = read();
+        boolean negative = c == '-';
+        if (c == '-' || c == '+') {
+            c = read();
+        }
+
+        // Accumulate the negative value, whose range includes Long.MIN_VALUE.
+        long value = 0;
+        int digits = 0;
+        while (c >= '0' && c <= '9') {
+            if (value < (Long.MIN_VALUE + (c - '0')) / 10) {
+                throw invalid("Number out of range on line " + lineNumber, c);
+            }
+            value = value * 10 - (c - '0');
+            digits++;
+            c = read();
+        }
+        if (digits == 0 || (c != ';' && !isEndOfLine(c)) || (!negative && value == Long.MIN_VALUE)) {
+            throw invalid("Invalid number on line " + lineNumber, c);
+        }
+        terminator = c;
+        return negative ? value : -value;
+    }
+
+    /**
+     * Create the exception for an invalid line, and keep the last character read to find the end of the line.
+     * @param message of the exception.
+     * @param c the last character read.
+     * @return the exception.
+     */
+    private NumberFormatException invalid(String message, int c) {
+        terminator = c;
+        return new NumberFormatException(message);
+    }
+
+    /**
+     * Skip to the start of the next line.
+     * @param c the last character read.
+     */
+    private void skipLine(int c) throws IOException {
+        while (!isEndOfLine(c)) {
+            c = read();
+        }
+        if (c == '\r') {
+            c = read();
+            if (c != '\n' && c != END_OF_FILE) {
+                file.unread();
+            }
+        }
+    }
+
+    private int read() throws IOException {
+        return file.read();
+    }
+
+}
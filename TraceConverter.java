@@ -0,0 +1,23 @@
+import java.io.IOException;
+
+class TraceConverter {
+
+    /**
+     * Convert a text input file (fileName.in) into a binary trace (fileName.trace).
+     * @param args the name of the I/O files, without extension.
+     */
+    public static void main (String [] args) {
+        String fileName = args.length > 0 ? args[0] : "3-madoutputter";
+        String filePath = System.getProperty("user.dir") + "/" + fileName;
+
+        try (TraceReader reader = new TextTraceReader(filePath + ".in");
+                BinaryTraceWriter writer = new BinaryTraceWriter(filePath + ".trace", reader.getCapacity())) {
+            while (reader.next()) {
+                writer.write(reader.getCommand(), reader.getId(), reader.getBytes());
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+}
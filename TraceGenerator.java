@@ -0,0 +1,298 @@
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+class TraceGenerator {
+
+    private SplittableRandom random;
+    // The distributions and their parameters, parsed once.
+    private String sizeDistribution;
+    private long[] sizeParameters;
+    private double[] sizeShape;
+    private String lifetimeDistribution;
+    private long[] lifetimeParameters;
+    private double lifetimeMean;
+
+    // Live blocks in a min-heap ordered by the instruction at which their lifetime ends.
+    private long[] deathTimes;
+    private int[] liveIds;
+    private long[] liveSizes;
+    private int liveCount;
+    private long liveBytes;
+
+    /**
+     * Write a synthetic input file (fileName.in) for Main.
+     * Options: --capacity=bytes --operations=n --allocate-ratio=(0..1] --compact=0..1 --output=0..1 --reallocate=0..1 --seed=n
+     * --sizes=uniform:min:max | exponential:mean | powerlaw:min:alpha | classes:size,size,...
+     * --lifetimes=fixed:n | uniform:min:max | exponential:mean (in steps, see generate)
+     * @param args the name of the file, without extension, and the options.
+     */
+    public static void main (String [] args) {
+        String fileName = "generated";
+        long capacity = 1 << 20;
+        long operations = 1_000_000;
+        double allocateRatio = 0.5;
+        double compactRatio = 0.0001;
+        double outputRatio = 0.0001;
+        double reallocateRatio = 0;
+        long seed = 1;
+        String sizes = "uniform:1:4096";
+        String lifetimes = "exponential:1000";
+        for (String arg : args) {
+            String value = arg.substring(arg.indexOf('=') + 1);
+            if (arg.startsWith("--capacity=")) {
+                capacity = Long.parseLong(value);
+            } else if (arg.startsWith("--operations=")) {
+                operations = Long.parseLong(value);
+            } else if (arg.startsWith("--allocate-ratio=")) {
+                allocateRatio = Double.parseDouble(value);
+            } else if (arg.startsWith("--compact=")) {
+                compactRatio = Double.parseDouble(value);
+            } else if (arg.startsWith("--output=")) {
+                outputRatio = Double.parseDouble(value);
+            } else if (arg.startsWith("--reallocate=")) {
+                reallocateRatio = Double.parseDouble(value);
+            } else if (arg.startsWith("--seed=")) {
+                seed = Long.parseLong(value);
+            } else if (arg.startsWith("--sizes=")) {
+                sizes = value;
+            } else if (arg.startsWith("--lifetimes=")) {
+                lifetimes = value;
+            } else if (arg.startsWith("--")) {
+                throw new IllegalArgumentException("Unknown option: " + arg);
+            } else {
+                fileName = arg;
+            }
+        }
+
+        TraceGenerator generator = new TraceGenerator(seed, sizes, lifetimes);
+        String filePath = System.getProperty("user.dir") + "/" + fileName + ".in";
+        try (Writer writer = new BufferedWriter(new FileWriter(filePath), 1 << 16)) {
+            generator.generate(writer, capacity, operations, allocateRatio, compactRatio, outputRatio, reallocateRatio);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Constructor.
+     * @param seed of the random generator, so the same options give the same trace.
+     * @param sizeDistribution of the allocated blocks.
+     * @param lifetimeDistribution of the allocated blocks.
+     */
+    public TraceGenerator(long seed, String sizeDistribution, String lifetimeDistribution) {
+        random = new SplittableRandom(seed);
+        parseSizeDistribution(sizeDistribution.split(":"));
+        parseLifetimeDistribution(lifetimeDistribution.split(":"));
+        deathTimes = new long[1024];
+        liveIds = new int[1024];
+        liveSizes = new long[1024];
+    }
+
+    /**
+     * Write a trace, one instruction at a time.
+     * Time advances by one step per instruction, and by one for each idle step. A live block is deallocated
+     * at the first step at or after the end of its lifetime, before anything else. Otherwise the step is C, O
+     * or R with the given ratios, otherwise an allocation with the given ratio, otherwise idle (no instruction).
+     * Blocks that would not fit next to the live blocks are not allocated, which leaves the step idle.
+     * R grows a random live block by up to its size, or halves it if that would not fit.
+     * @param writer where the trace is written.
+     * @param capacity of the memory.
+     * @param operations the number of instructions.
+     * @param allocateRatio the chance that a step without a due deallocation, C, O or R allocates (more than 0).
+     * @param compactRatio the share of C instructions.
+     * @param outputRatio the share of O instructions.
+     * @param reallocateRatio the share of R instructions.
+     * @throws IOException if the trace cannot be written.
+     */
+    public void generate(Writer writer, long capacity, long operations, double allocateRatio,
+            double compactRatio, double outputRatio, double reallocateRatio) throws IOException {
+        if (allocateRatio <= 0) {
+            throw new IllegalArgumentException("The allocate ratio must be more than 0");
+        }
+        StringBuilder line = new StringBuilder();
+        writer.write(Long.toString(capacity));
+        writer.write('\n');
+
+        int nextId = 1;
+        long time = 0;
+        for (long instruction = 1; instruction <= operations; time++) {
+            line.setLength(0);
+            if (liveCount > 0 && deathTimes[0] <= time) {
+                line.append("D;").append(removeFirstLive()).append('\n');
+            } else {
+                double command = random.nextDouble();
+                if (command < compactRatio) {
+                    line.append("C\n");
+                } else if (command < compactRatio + outputRatio) {
+                    line.append("O\n");
+                } else if (command < compactRatio + outputRatio + reallocateRatio && liveCount > 0) {
+                    int index = random.nextInt(liveCount);
+                    long size = liveSizes[index];
+                    long newSize = size + 1 + random.nextLong(size);
+                    if (newSize - size > capacity - liveBytes) {
+                        newSize = Math.max(1, size / 2);
+                    }
+                    liveSizes[index] = newSize;
+                    liveBytes += newSize - size;
+                    line.append("R;").append(liveIds[index]).append(';').append(newSize).append('\n');
+                } else if (random.nextDouble() < allocateRatio) {
+                    long size = nextSize();
+                    if (liveCount == 0 || size <= capacity - liveBytes) {
+                        int id = nextId++;
+                        addLive(time + nextLifetime(), id, size);
+                        line.append("A;").append(id).append(';').append(size).append('\n');
+                    }
+                }
+            }
+
+            // Idle steps write nothing.
+            if (line.length() > 0) {
+                writer.append(line);
+                instruction++;
+            }
+        }
+    }
+
+    /**
+     * Parse the parameters of the size distribution.
+     * @param distribution the name of the distribution and its parameters.
+     */
+    private void parseSizeDistribution(String[] distribution) {
+        sizeDistribution = distribution[0];
+        switch (sizeDistribution) {
+            case "uniform":
+                sizeParameters = new long[] { Long.parseLong(distribution[1]), Long.parseLong(distribution[2]) };
+                break;
+            case "exponential":
+                sizeShape = new double[] { Double.parseDouble(distribution[1]) };
+                break;
+            case "powerlaw":
+                sizeShape = new double[] { Double.parseDouble(distribution[1]), Double.parseDouble(distribution[2]) };
+                break;
+            case "classes":
+                sizeParameters = Arrays.stream(distribution[1].split(",")).mapToLong(Long::parseLong).toArray();
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown size distribution: " + sizeDistribution);
+        }
+    }
+
+    /**
+     * Parse the parameters of the lifetime distribution.
+     * @param distribution the name of the distribution and its parameters.
+     */
+    private void parseLifetimeDistribution(String[] distribution) {
+        lifetimeDistribution = distribution[0];
+        switch (lifetimeDistribution) {
+            case "fixed":
+                lifetimeParameters = new long[] { Long.parseLong(distribution[1]) };
+                break;
+            case "uniform":
+                lifetimeParameters = new long[] { Long.parseLong(distribution[1]), Long.parseLong(distribution[2]) };
+                break;
+            case "exponential":
+                lifetimeMean = Double.parseDouble(distribution[1]);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown lifetime distribution: " + lifetimeDistribution);
+        }
+    }
+
+    private long nextSize() {
+        long size;
+        switch (sizeDistribution) {
+            case "uniform":
+
+                // Ranges that fit an int are drawn as before, so existing seeds give the same traces.
+                long min = sizeParameters[0];
+                long range = sizeParameters[1] - min + 1;
+                size = min + (range <= Integer.MAX_VALUE ? random.nextInt((int) range) : random.nextLong(range));
+                break;
+            case "exponential":
+                size = 1 + (long) (-sizeShape[0] * Math.log(1 - random.nextDouble()));
+                break;
+            case "powerlaw":
+
+                // Pareto distribution with the given minimum and shape.
+                size = (long) (sizeShape[0] / Math.pow(1 - random.nextDouble(), 1 / sizeShape[1]));
+                break;
+            default:
+                size = sizeParameters[random.nextInt(sizeParameters.length)];
+        }
+        return Math.max(1, size);
+    }
+
+    private long nextLifetime() {
+        switch (lifetimeDistribution) {
+            case "fixed":
+                return lifetimeParameters[0];
+            case "uniform":
+                long min = lifetimeParameters[0];
+                return min + random.nextLong(lifetimeParameters[1] - min + 1);
+            default:
+                return (long) (-lifetimeMean * Math.log(1 - random.nextDouble()));
+        }
+    }
+
+    private void addLive(long deathTime, int id, long size) {
+        if (liveCount == deathTimes.length) {
+            deathTimes = Arrays.copyOf(deathTimes, liveCount * 2);
+            liveIds = Arrays.copyOf(liveIds, liveCount * 2);
+            liveSizes = Arrays.copyOf(liveSizes, liveCount * 2);
+        }
+        int index = liveCount++;
+        while (index > 0) {
+            int parent = (index - 1) / 2;
+            if (deathTimes[parent] <= deathTime) {
+                break;
+            }
+            moveLive(parent, index);
+            index = parent;
+        }
+        deathTimes[index] = deathTime;
+        liveIds[index] = id;
+        liveSizes[index] = size;
+        liveBytes += size;
+    }
+
+    private int removeFirstLive() {
+        int id = liveIds[0];
+        liveBytes -= liveSizes[0];
+        liveCount--;
+
+        // Sift the last live block down from the root.
+        long deathTime = deathTimes[liveCount];
+        int lastId = liveIds[liveCount];
+        long lastSize = liveSizes[liveCount];
+        int index = 0;
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= liveCount) {
+                break;
+            }
+            if (child + 1 < liveCount && deathTimes[child + 1] < deathTimes[child]) {
+                child++;
+            }
+            if (deathTime <= deathTimes[child]) {
+                break;
+            }
+            moveLive(child, index);
+            index = child;
+        }
+        deathTimes[index] = deathTime;
+        liveIds[index] = lastId;
+        liveSizes[index] = lastSize;
+        return id;
+    }
+
+    private void moveLive(int from, int to) {
+        deathTimes[to] = deathTimes[from];
+        liveIds[to] = liveIds[from];
+        liveSizes[to] = liveSizes[from];
+    }
+
+}
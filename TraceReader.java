@@ -0,0 +1,45 @@
+import java.io.Closeable;
+import java.io.IOException;
+
+public interface TraceReader extends Closeable {
+
+    // Commands of the instructions.
+    public static final int UNKNOWN = 0;
+    public static final int ALLOCATE = 1;
+    public static final int DEALLOCATE = 2;
+    public static final int COMPACT = 3;
+    public static final int OUTPUT = 4;
+    public static final int REALLOCATE = 5;
+
+    /**
+     * Return the memory capacity given at the start of the trace.
+     * @return the capacity.
+     */
+    public long getCapacity();
+
+    /**
+     * Move to the next instruction of the trace.
+     * @return true if there is a next instruction, otherwise false.
+     * @throws IOException if the trace cannot be read.
+     */
+    public boolean next() throws IOException;
+
+    /**
+     * Return the command of the current instruction.
+     * @return one of UNKNOWN, ALLOCATE, DEALLOCATE, COMPACT, OUTPUT or REALLOCATE.
+     */
+    public int getCommand();
+
+    /**
+     * Return the block id of the current allocate, deallocate or reallocate instruction.
+     * @return the id.
+     */
+    public int getId();
+
+    /**
+     * Return the bytes of the current allocate or reallocate instruction.
+     * @return the bytes.
+     */
+    public long getBytes();
+
+}
@@ -0,0 +1,410 @@
+import java.io.IOException;
+
+public class TwoLevelSegregatedFit implements AllocationStrategy {
+
+    // Each first level (power of two) range is split into 2^SECOND_LEVEL_BITS size classes.
+    private static final int SECOND_LEVEL_BITS = 4;
+    private static final int SECOND_LEVEL_COUNT = 1 << SECOND_LEVEL_BITS;
+    private static final int FIRST_LEVEL_COUNT = 64 - SECOND_LEVEL_BITS;
+
+    /**
+     * A free or allocated address range, linked to its physical neighbours
+     * and, if free, to the other free ranges of its size class.
+     */
+    private static class Region {
+        private long startAddress;
+        private long size;
+        private boolean free;
+        private Region previousPhysical;
+        private Region nextPhysical;
+        private Region previousFree;
+        private Region nextFree;
+
+        private Region(long startAddress, long size, boolean free) {
+            this.startAddress = startAddress;
+            this.size = size;
+            this.free = free;
+        }
+    }
+
+    private Region[][] freeLists;
+    // Bit i is set if any free list of first level i is not empty.
+    private long firstLevelBitmap;
+    // Bit j of entry i is set if the free list of first level i and second level j is not empty.
+    private int[] secondLevelBitmaps;
+    // Allocated regions by start address.
+    private LongMap<Region> allocatedRegions;
+    // Regions merged away by coalescing, reused by splits.
+    private Region spareRegions;
+
+    /**
+     * Constructor.
+     */
+    public TwoLevelSegregatedFit() {
+        freeLists = new Region[FIRST_LEVEL_COUNT][SECOND_LEVEL_COUNT];
+        secondLevelBitmaps = new int[FIRST_LEVEL_COUNT];
+        allocatedRegions = new LongMap<>();
+    }
+
+    @Override
+    public boolean allocateBlock(int id, long bytes, Memory memory) {
+        if (bytes <= 0) {
+            return false;
+        }
+
+        // Find a free region of a size class whose every region can hold the bytes.
+        Metrics metrics = memory.getMetrics();
+        Region region = findFreeRegion(roundUp(bytes));
+        if (metrics != null) {
+            metrics.examine(region == null ? 0 : 1);
+        }
+
+        // Otherwise the first region of the request's own size class may still fit.
+        if (region == null) {
+            int firstLevel = getFirstLevel(bytes);
+            Region candidate = freeLists[firstLevel][getSecondLevel(bytes, firstLevel)];
+            if (candidate != null && candidate.size >= bytes) {
+                region = candidate;
+            }
+            if (metrics != null) {
+                metrics.examine(candidate == null ? 0 : 1);
+            }
+        }
+
+        // If no free region found return false.
+        if (region == null) {
+            return false;
+        }
+
+        // Allocate the start of the region and return the rest to the free lists.
+        removeFree(region);
+        if (region.size > bytes) {
+            Region rest = newRegion(region.startAddress + bytes, region.size - bytes, true);
+            rest.previousPhysical = region;
+            rest.nextPhysical = region.nextPhysical;
+            if (region.nextPhysical != null) {
+                region.nextPhysical.previousPhysical = rest;
+            }
+            region.nextPhysical = rest;
+            region.size = bytes;
+            addFree(rest);
+            if (metrics != null) {
+                metrics.strategySplits(1);
+            }
+        }
+        region.free = false;
+
+        memory.addBlock(id, region.startAddress, region.startAddress + bytes - 1);
+        allocatedRegions.put(region.startAddress, region);
+        return true;
+    }
+
+    @Override
+    public void deallocateBlock(long startAddress, long endAddress, Memory memory) {
+        Region region = allocatedRegions.remove(startAddress);
+        if (region == null) {
+            return;
+        }
+        region.free = true;
+
+        // Coalesce with the physical neighbours if they are free.
+        int coalesces = 0;
+        Region previous = region.previousPhysical;
+        if (previous != null && previous.free) {
+            removeFree(previous);
+            previous.size += region.size;
+            unlinkPhysical(region);
+            releaseRegion(region);
+            region = previous;
+            coalesces++;
+        }
+        Region next = region.nextPhysical;
+        if (next != null && next.free) {
+            removeFree(next);
+            region.size += next.size;
+            unlinkPhysical(next);
+            releaseRegion(next);
+            coalesces++;
+        }
+        if (memory.getMetrics() != null) {
+            memory.getMetrics().strategyCoalesces(coalesces);
+        }
+        addFree(region);
+    }
+
+    @Override
+    public void reset(Memory memory) {
+        freeLists = new Region[FIRST_LEVEL_COUNT][SECOND_LEVEL_COUNT];
+        secondLevelBitmaps = new int[FIRST_LEVEL_COUNT];
+        firstLevelBitmap = 0;
+        allocatedRegions.clear();
+
+        // Rebuild the physical regions from the allocated blocks and the gaps between them.
+        Region last = null;
+        long startAddress = 0;
+        for (Block block : memory.getSortedBlocks()) {
+            if (startAddress < block.getStartAddress()) {
+                last = appendRegion(last, new Region(startAddress, block.getStartAddress() - startAddress, true));
+            }
+            Region region = new Region(block.getStartAddress(), block.getSize(), false);
+            last = appendRegion(last, region);
+            allocatedRegions.put(block.getStartAddress(), region);
+            startAddress = block.getEndAddress() + 1;
+        }
+        if (startAddress < memory.getCapacity()) {
+            appendRegion(last, new Region(startAddress, memory.getCapacity() - startAddress, true));
+        }
+    }
+
+    @Override
+    public void writeState(Checkpoint checkpoint, Memory memory) throws IOException {
+
+        // Regions are rebuilt by reset, but the order of each free list depends on the order regions were freed.
+        // Each list is written from its tail, so adding the regions again in that order restores it.
+        int freeRegionCount = 0;
+        for (Region[] lists : freeLists) {
+            for (Region head : lists) {
+                for (Region region = head; region != null; region = region.nextFree) {
+                    freeRegionCount++;
+                }
+            }
+        }
+        checkpoint.putInt(freeRegionCount);
+        for (Region[] lists : freeLists) {
+            for (Region head : lists) {
+                Region tail = head;
+                while (tail != null && tail.nextFree != null) {
+                    tail = tail.nextFree;
+                }
+                for (Region region = tail; region != null; region = region.previousFree) {
+                    checkpoint.putLong(region.startAddress);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void readState(Checkpoint checkpoint, Memory memory) throws IOException {
+        LongMap<Region> regions = new LongMap<>();
+        for (Region[] lists : freeLists) {
+            for (Region head : lists) {
+                for (Region region = head; region != null; region = region.nextFree) {
+                    regions.put(region.startAddress, region);
+                }
+            }
+        }
+        for (int i = checkpoint.getInt(); i > 0; i--) {
+            Region region = regions.get(checkpoint.getLong());
+            if (region == null) {
+                throw new IOException("Corrupt checkpoint");
+            }
+            removeFree(region);
+            addFree(region);
+        }
+    }
+
+    @Override
+    public boolean reallocateBlock(int id, long startAddress, long endAddress, long bytes, Memory memory) {
+        Region region = allocatedRegions.get(startAddress);
+        Region next = region.nextPhysical;
+        if (bytes < region.size) {
+
+            // Return the end of the region to the free lists, merged with the next region if it is free.
+            memory.resizeBlock(id, startAddress + bytes - 1);
+            Region rest = newRegion(startAddress + bytes, region.size - bytes, true);
+            region.size = bytes;
+            if (next != null && next.free) {
+                removeFree(next);
+                rest.size += next.size;
+                unlinkPhysical(next);
+                releaseRegion(next);
+                next = region.nextPhysical;
+            }
+            rest.previousPhysical = region;
+            rest.nextPhysical = next;
+            if (next != null) {
+                next.previousPhysical = rest;
+            }
+            region.nextPhysical = rest;
+            addFree(rest);
+            if (memory.getMetrics() != null) {
+                memory.getMetrics().strategySplits(1);
+            }
+        } else if (bytes > region.size) {
+
+            // Grow into the next region if it is free and big enough, returning what is left of it.
+            if (next == null || !next.free || region.size + next.size < bytes
+                    || !memory.resizeBlock(id, startAddress + bytes - 1)) {
+                return false;
+            }
+            removeFree(next);
+            long grownBytes = bytes - region.size;
+            region.size = bytes;
+            if (next.size > grownBytes) {
+                next.startAddress += grownBytes;
+                next.size -= grownBytes;
+                addFree(next);
+            } else {
+                unlinkPhysical(next);
+                releaseRegion(next);
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean keepsFreeLists() {
+        return true;
+    }
+
+    @Override
+    public String getStrategy() {
+        return "Two-level segregated fit";
+    }
+
+    /**
+     * Link a region after the last physical region, adding it to the free lists if it is free.
+     * @param last the last physical region, or null.
+     * @param region the region to append.
+     * @return the appended region.
+     */
+    private Region appendRegion(Region last, Region region) {
+        region.previousPhysical = last;
+        if (last != null) {
+            last.nextPhysical = region;
+        }
+        if (region.free) {
+            addFree(region);
+        }
+        return region;
+    }
+
+    /**
+     * Return a region, reusing a spare one if there is any.
+     * @param startAddress of the region.
+     * @param size of the region.
+     * @param free true if the region is free.
+     * @return the region, unlinked.
+     */
+    private Region newRegion(long startAddress, long size, boolean free) {
+        Region region = spareRegions;
+        if (region == null) {
+            return new Region(startAddress, size, free);
+        }
+        spareRegions = region.nextFree;
+        region.startAddress = startAddress;
+        region.size = size;
+        region.free = free;
+        region.previousPhysical = null;
+        region.nextPhysical = null;
+        region.nextFree = null;
+        return region;
+    }
+
+    /**
+     * Keep an unlinked region for reuse.
+     * @param region the region.
+     */
+    private void releaseRegion(Region region) {
+        region.previousFree = null;
+        region.nextFree = spareRegions;
+        spareRegions = region;
+    }
+
+    private void unlinkPhysical(Region region) {
+        if (region.previousPhysical != null) {
+            region.previousPhysical.nextPhysical = region.nextPhysical;
+        }
+        if (region.nextPhysical != null) {
+            region.nextPhysical.previousPhysical = region.previousPhysical;
+        }
+    }
+
+    /**
+     * Return the first free region of the smallest non-empty size class at or above the size class of the given bytes.
+     * @param bytes already rounded up to the start of a size class.
+     * @return the free region, or null if there is none.
+     */
+    private Region findFreeRegion(long bytes) {
+        if (bytes < 0) {
+            return null;
+        }
+        int firstLevel = getFirstLevel(bytes);
+        int secondLevel = getSecondLevel(bytes, firstLevel);
+
+        int secondLevelMap = secondLevelBitmaps[firstLevel] & (-1 << secondLevel);
+        if (secondLevelMap == 0) {
+            long firstLevelMap = firstLevel + 1 < 64 ? firstLevelBitmap & (-1L << (firstLevel + 1)) : 0;
+            if (firstLevelMap == 0) {
+                return null;
+            }
+            firstLevel = Long.numberOfTrailingZeros(firstLevelMap);
+            secondLevelMap = secondLevelBitmaps[firstLevel];
+        }
+        return freeLists[firstLevel][Integer.numberOfTrailingZeros(secondLevelMap)];
+    }
+
+    private void addFree(Region region) {
+        int firstLevel = getFirstLevel(region.size);
+        int secondLevel = getSecondLevel(region.size, firstLevel);
+        Region head = freeLists[firstLevel][secondLevel];
+        region.previousFree = null;
+        region.nextFree = head;
+        if (head != null) {
+            head.previousFree = region;
+        }
+        freeLists[firstLevel][secondLevel] = region;
+        firstLevelBitmap |= 1L << firstLevel;
+        secondLevelBitmaps[firstLevel] |= 1 << secondLevel;
+    }
+
+    private void removeFree(Region region) {
+        int firstLevel = getFirstLevel(region.size);
+        int secondLevel = getSecondLevel(region.size, firstLevel);
+        if (region.previousFree != null) {
+            region.previousFree.nextFree = region.nextFree;
+        } else {
+            freeLists[firstLevel][secondLevel] = region.nextFree;
+        }
+        if (region.nextFree != null) {
+            region.nextFree.previousFree = region.previousFree;
+        }
+        region.previousFree = null;
+        region.nextFree = null;
+        if (freeLists[firstLevel][secondLevel] == null) {
+            secondLevelBitmaps[firstLevel] &= ~(1 << secondLevel);
+            if (secondLevelBitmaps[firstLevel] == 0) {
+                firstLevelBitmap &= ~(1L << firstLevel);
+            }
+        }
+    }
+
+    /**
+     * Round a size up to the start of the next size class, so every region of that class can hold it.
+     * @param size the size.
+     * @return the rounded size, negative if it overflows.
+     */
+    private static long roundUp(long size) {
+        if (size < SECOND_LEVEL_COUNT) {
+            return size;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(size) - SECOND_LEVEL_BITS;
+        long mask = (1L << shift) - 1;
+        return (size + mask) & ~mask;
+    }
+
+    private static int getFirstLevel(long size) {
+        if (size < SECOND_LEVEL_COUNT) {
+            return 0;
+        }
+        return 63 - Long.numberOfLeadingZeros(size) - SECOND_LEVEL_BITS + 1;
+    }
+
+    private static int getSecondLevel(long size, int firstLevel) {
+        if (firstLevel == 0) {
+            return (int) size;
+        }
+        return (int) (size >>> (firstLevel - 1)) - SECOND_LEVEL_COUNT;
+    }
+
+}
@@ -1,23 +1,25 @@
 public class WorstFit implements AllocationStrategy {
 
     @Override
-    public boolean allocateBlock(int id, int bytes, Memory memory) {
+    public boolean allocateBlock(int id, long bytes, Memory memory) {
 
-        // Find the worst fitting (biggest) free block in memory.
-        Block worstFitBlock = new Block(-1, 0, 0);
-        for (Block freeBlock : memory.getFreeBlocks()) {
-            if (freeBlock.getSize() >= bytes && freeBlock.getSize() > worstFitBlock.getSize()) {
-                worstFitBlock = freeBlock;
-            }
+        // If memory is empty alocate the block at the lowest address.
+        if (memory.isEmpty()) {
+            memory.addBlock(id, 0, bytes - 1);
+            return true;
         }
 
-        // If no free block found return false.
-        if (worstFitBlock.getEndAddress() == 0) {
+        // Find the worst fitting (biggest) free block in memory.
+        long worstFitSize = memory.getLargestFreeBlockSize();
+
+        // If no free block found return false (single free bytes are never used).
+        if (worstFitSize < bytes || worstFitSize <= 1) {
             return false;
         }
 
-        // Otherwise allocate the block and retun true.
-        memory.addBlock(new Block(id) , worstFitBlock.getStartAddress(), worstFitBlock.getStartAddress() + bytes - 1);
+        // Otherwise allocate the block at the lowest address of that size and retun true.
+        long startAddress = memory.findBestFit(worstFitSize);
+        memory.addBlock(id, startAddress, startAddress + bytes - 1);
         return true;
 
     }
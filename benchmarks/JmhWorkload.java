@@ -0,0 +1,39 @@
+/**
+ * The benchmark workload, seen by the JMH benchmarks through jmh.Workload.
+ * JMH benchmarks cannot be in the default package, and classes in a package cannot name the classes of the
+ * default package, so the benchmarks load this class by name.
+ */
+public class JmhWorkload extends Benchmark.Workload implements jmh.Workload {
+
+    /**
+     * Constructor, fills the memory with live blocks.
+     * @param strategy the name of the allocation strategy.
+     * @param heapSize the capacity of the memory.
+     * @param live the number of live blocks.
+     * @param sizeDistribution uniform, exponential or classes.
+     */
+    public JmhWorkload(String strategy, long heapSize, int live, String sizeDistribution) {
+        super(strategy, heapSize, live, sizeDistribution);
+    }
+
+    @Override
+    public boolean churn() {
+        return super.churn();
+    }
+
+    @Override
+    public void fragment() {
+        super.fragment();
+    }
+
+    @Override
+    public void compact() {
+        super.compact();
+    }
+
+    @Override
+    public double getFragmentation() {
+        return super.getFragmentation();
+    }
+
+}
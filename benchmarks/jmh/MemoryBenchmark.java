@@ -0,0 +1,90 @@
+package jmh;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 5, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+public class MemoryBenchmark {
+
+    @Param({"first", "best", "worst", "next", "buddy", "tlsf"})
+    private String strategy;
+
+    @Param({"1048576", "67108864"})
+    private long heapSize;
+
+    @Param({"1000", "100000"})
+    private int live;
+
+    @Param({"uniform", "exponential", "classes"})
+    private String sizes;
+
+    private Workload workload;
+
+    /**
+     * Run the benchmarks with the GC profiler, which reports the bytes allocated per operation.
+     * Takes the usual JMH options, e.g. "-p strategy=tlsf -p heapSize=4398046511104 MemoryBenchmark.churn".
+     * @param args the JMH options.
+     * @throws CommandLineOptionException if the options are invalid.
+     * @throws RunnerException if a benchmark fails.
+     */
+    public static void main(String[] args) throws CommandLineOptionException, RunnerException {
+        new Runner(new OptionsBuilder().parent(new CommandLineOptions(args)).addProfiler(GCProfiler.class).build()).run();
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws ReflectiveOperationException {
+        workload = (Workload) Class.forName("JmhWorkload").getConstructor(String.class, long.class, int.class, String.class)
+                .newInstance(strategy, heapSize, live, sizes);
+    }
+
+    /**
+     * Fragments the memory again before each compaction, which is not measured.
+     */
+    @State(Scope.Thread)
+    public static class Fragmented {
+
+        @Setup(Level.Invocation)
+        public void fragment(MemoryBenchmark benchmark) {
+            benchmark.workload.fragment();
+        }
+
+    }
+
+    @Benchmark
+    public boolean allocateDeallocate() {
+        return workload.churn();
+    }
+
+    @Benchmark
+    public void compact(Fragmented fragmented) {
+        workload.compact();
+    }
+
+    @Benchmark
+    public double fragmentation() {
+        return workload.getFragmentation();
+    }
+
+}
@@ -0,0 +1,30 @@
+package jmh;
+
+/**
+ * A memory filled with live blocks, kept at a steady state by replacing random blocks.
+ */
+public interface Workload {
+
+    /**
+     * Deallocate a random live block and allocate a new one.
+     * @return true if the new block was allocated.
+     */
+    public boolean churn();
+
+    /**
+     * Replace a tenth of the live blocks, leaving holes all over memory.
+     */
+    public void fragment();
+
+    /**
+     * Compact the memory.
+     */
+    public void compact();
+
+    /**
+     * Return the fragmentation of the memory.
+     * @return the fragmentation.
+     */
+    public double getFragmentation();
+
+}
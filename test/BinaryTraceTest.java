@@ -0,0 +1,95 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class BinaryTraceTest {
+
+    @TempDir
+    Path folder;
+
+    @Test
+    void convertedTraceReadsLikeTheText() throws IOException {
+
+        // The capacity and the first block do not fit in an int.
+        String text = "6000000000\nA;1;3000000000\nA;-2;5\nR;1;7\nD;1\nC\nO\nD;99\n";
+        Path input = folder.resolve("x.in");
+        Path trace = folder.resolve("x.trace");
+        Files.write(input, text.getBytes(StandardCharsets.US_ASCII));
+        try (TraceReader reader = new TextTraceReader(input.toString());
+                BinaryTraceWriter writer = new BinaryTraceWriter(trace.toString(), reader.getCapacity())) {
+            while (reader.next()) {
+                writer.write(reader.getCommand(), reader.getId(), reader.getBytes());
+            }
+        }
+
+        try (TraceReader expected = new TextTraceReader(input.toString());
+                TraceReader actual = new BinaryTraceReader(trace.toString())) {
+            assertEquals(6_000_000_000L, actual.getCapacity());
+            while (expected.next()) {
+                assertTrue(actual.next());
+                assertEquals(expected.getCommand(), actual.getCommand());
+                if (expected.getCommand() != TraceReader.COMPACT && expected.getCommand() != TraceReader.OUTPUT) {
+                    assertEquals(expected.getId(), actual.getId());
+                }
+                if (expected.getCommand() == TraceReader.ALLOCATE || expected.getCommand() == TraceReader.REALLOCATE) {
+                    assertEquals(expected.getBytes(), actual.getBytes());
+                }
+            }
+            assertFalse(actual.next());
+        }
+    }
+
+    @Test
+    void versionOneTraceCanStillBeRead() throws IOException {
+
+        // Version 1: a 4 byte capacity, and bytes as a varint of int range.
+        ByteArrayOutputStream records = new ByteArrayOutputStream();
+        records.write(TraceReader.ALLOCATE);
+        records.write(2);
+        records.write(new byte[] { (byte) 0xC8, 0x01 });
+        records.write(TraceReader.DEALLOCATE);
+        records.write(2);
+        records.write(TraceReader.COMPACT);
+        ByteBuffer header = ByteBuffer.allocate(BinaryTraceWriter.HEADER_SIZE - 4);
+        header.putInt(BinaryTraceWriter.MAGIC).put((byte) 1).putInt(1000).putLong(3);
+        Path trace = folder.resolve("v1.trace");
+        Files.write(trace, header.array());
+        Files.write(trace, records.toByteArray(), StandardOpenOption.APPEND);
+
+        try (TraceReader reader = new BinaryTraceReader(trace.toString())) {
+            assertEquals(1000, reader.getCapacity());
+            assertTrue(reader.next());
+            assertEquals(TraceReader.ALLOCATE, reader.getCommand());
+            assertEquals(1, reader.getId());
+            assertEquals(100, reader.getBytes());
+            assertTrue(reader.next());
+            assertEquals(TraceReader.DEALLOCATE, reader.getCommand());
+            assertEquals(1, reader.getId());
+            assertTrue(reader.next());
+            assertEquals(TraceReader.COMPACT, reader.getCommand());
+            assertFalse(reader.next());
+        }
+    }
+
+    @Test
+    void unknownVersionIsRejected() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(BinaryTraceWriter.HEADER_SIZE);
+        header.putInt(BinaryTraceWriter.MAGIC).put((byte) 9).putLong(1000).putLong(0);
+        Path trace = folder.resolve("v9.trace");
+        Files.write(trace, header.array());
+        assertThrows(IOException.class, () -> new BinaryTraceReader(trace.toString()));
+    }
+
+}
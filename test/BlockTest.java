@@ -0,0 +1,94 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.ByteBuffer;
+
+import org.junit.jupiter.api.Test;
+
+class BlockTest {
+
+    @Test
+    void viewOfMovedBlockIsStale() {
+        Memory memory = new Memory(new FirstFit());
+        memory.setCapacity(100);
+        memory.setStorage(ByteBuffer.allocate(100));
+        memory.allocateBlock(1, 10);
+        memory.allocateBlock(2, 10);
+        memory.allocateBlock(3, 10);
+        Block first = memory.getBlock(1);
+        Block third = memory.getBlock(3);
+        third.getBuffer().put(0, (byte) 7);
+        memory.deallocateBlock(2);
+        memory.compact();
+
+        // Block 1 did not move, block 3 did.
+        assertEquals(0, first.getStartAddress());
+        assertThrows(IllegalStateException.class, third::getStartAddress);
+        assertThrows(IllegalStateException.class, third::getBuffer);
+        Block moved = memory.getBlock(3);
+        assertEquals(10, moved.getStartAddress());
+        assertEquals(7, moved.getBuffer().get(0));
+    }
+
+    @Test
+    void viewOfRelocatedOrResizedBlockIsStale() {
+        Memory memory = new Memory(new FirstFit());
+        memory.setCapacity(100);
+        memory.allocateBlock(1, 10);
+        memory.allocateBlock(2, 10);
+        Block first = memory.getBlock(1);
+        Block second = memory.getBlock(2);
+        memory.reallocateBlock(1, 20);
+        memory.reallocateBlock(2, 15);
+        assertThrows(IllegalStateException.class, first::getSize);
+        assertThrows(IllegalStateException.class, second::getSize);
+        assertEquals(20, memory.getBlock(1).getSize());
+        assertEquals(15, memory.getBlock(2).getSize());
+    }
+
+    @Test
+    void viewStaysTiedToItsBlockWhenIdsRepeat() {
+        Memory memory = new Memory(new FirstFit());
+        memory.setCapacity(100);
+        memory.allocateBlock(1, 10);
+        memory.allocateBlock(1, 20);
+        Block earliest = memory.getBlock(1);
+        memory.deallocateBlock(1);
+        assertThrows(IllegalStateException.class, earliest::getStartAddress);
+        assertEquals(20, memory.getBlock(1).getSize());
+    }
+
+    @Test
+    void viewOfCoalescedBlockIsStale() {
+        Memory memory = new Memory(new FirstFit());
+        memory.setCapacity(100);
+        memory.allocateBlock(1, 10);
+        memory.allocateBlock(2, 10);
+        memory.allocateBlock(3, 10);
+        memory.deallocateBlock(1);
+        Block freeBlock = memory.getFreeBlocks().get(0);
+        Block second = memory.getBlock(2);
+        memory.deallocateBlock(2);
+
+        // Block 2 is merged into the free block before it, whose view is stale as well.
+        assertThrows(IllegalStateException.class, second::getStartAddress);
+        assertThrows(IllegalStateException.class, freeBlock::getSize);
+        assertEquals(20, memory.getFreeBlocks().get(0).getSize());
+    }
+
+    @Test
+    void viewOfReusedCachedBlockIsStale() {
+        Memory memory = new Memory(new FirstFit());
+        memory.setCapacity(100);
+        memory.setQuickLists(16, 4);
+        memory.allocateBlock(1, 10);
+        Block block = memory.getBlock(1);
+        memory.deallocateBlock(1);
+        memory.allocateBlock(2, 10);
+
+        // Block 2 took the cached block's place.
+        assertEquals(0, memory.getBlock(2).getStartAddress());
+        assertThrows(IllegalStateException.class, block::getStartAddress);
+    }
+
+}
@@ -0,0 +1,120 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class CheckpointTest {
+
+    private static final String[] STRATEGIES = { "first", "best", "worst", "next", "buddy", "tlsf" };
+    private static final int INSTRUCTIONS = 4000;
+
+    @TempDir
+    Path folder;
+
+    @Test
+    void resumedRunEndsLikeAnUninterruptedOne() throws IOException {
+        int[][] trace = generateTrace(4);
+        String checkpoint = folder.resolve("x.checkpoint").toString();
+
+        // Run the whole trace, checkpointing half way.
+        ArrayList<CommandExecutor> executors = newExecutors();
+        for (int i = 0; i < INSTRUCTIONS; i++) {
+            execute(executors, i + 1, trace[i]);
+            if (i + 1 == INSTRUCTIONS / 2) {
+                Checkpoint.save(checkpoint, i + 1, executors);
+            }
+        }
+
+        // Resume from the checkpoint with new memories.
+        ArrayList<CommandExecutor> resumedExecutors = newExecutors();
+        int executedInstructions = Checkpoint.load(checkpoint, resumedExecutors);
+        assertEquals(INSTRUCTIONS / 2, executedInstructions);
+        for (int i = executedInstructions; i < INSTRUCTIONS; i++) {
+            execute(resumedExecutors, i + 1, trace[i]);
+        }
+        assertEquals(output(executors), output(resumedExecutors));
+    }
+
+    @Test
+    void checkpointOfOtherStrategiesIsRejected() throws IOException {
+        String checkpoint = folder.resolve("x.checkpoint").toString();
+        Checkpoint.save(checkpoint, 0, newExecutors());
+        ArrayList<CommandExecutor> executors = new ArrayList<>();
+        for (int i = STRATEGIES.length - 1; i >= 0; i--) {
+            executors.add(new CommandExecutor(new Memory(Main.createStrategy(STRATEGIES[i]))));
+        }
+        assertThrows(IOException.class, () -> Checkpoint.load(checkpoint, executors));
+    }
+
+    /**
+     * Return an executor for each strategy with a memory of 64 KiB, with quick lists and compaction on failure
+     * for some, so their state is checkpointed too.
+     * @return the executors.
+     */
+    private static ArrayList<CommandExecutor> newExecutors() {
+        ArrayList<CommandExecutor> executors = new ArrayList<>();
+        for (String strategy : STRATEGIES) {
+            Memory memory = new Memory(Main.createStrategy(strategy));
+            memory.setCapacity(1 << 16);
+            CommandExecutor executor = new CommandExecutor(memory);
+            executor.reportCompactions();
+            if (!strategy.equals("worst")) {
+                memory.setQuickLists(256, 8);
+                executor.setCompactionPolicy(CompactionPolicy.MINIMAL);
+            }
+            executors.add(executor);
+        }
+        return executors;
+    }
+
+    /**
+     * Generate random A, D, R and C instructions, each as command, id and bytes.
+     * @param seed of the random numbers.
+     * @return the instructions.
+     */
+    private static int[][] generateTrace(int seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        int[][] trace = new int[INSTRUCTIONS][];
+        for (int i = 0; i < INSTRUCTIONS; i++) {
+            int choice = random.nextInt(100);
+            int command = choice < 55 ? TraceReader.ALLOCATE : choice < 90 ? TraceReader.DEALLOCATE
+                    : choice < 99 ? TraceReader.REALLOCATE : TraceReader.COMPACT;
+            trace[i] = new int[] { command, random.nextInt(400), 1 + random.nextInt(600) };
+        }
+        return trace;
+    }
+
+    private static void execute(ArrayList<CommandExecutor> executors, int instructionNumber, int[] instruction) {
+        for (CommandExecutor executor : executors) {
+            switch (instruction[0]) {
+                case TraceReader.ALLOCATE:
+                    executor.allocate(instructionNumber, instruction[1], instruction[2]);
+                    break;
+                case TraceReader.DEALLOCATE:
+                    executor.deallocate(instructionNumber, instruction[1]);
+                    break;
+                case TraceReader.REALLOCATE:
+                    executor.reallocate(instructionNumber, instruction[1], instruction[2]);
+                    break;
+                default:
+                    executor.compact(instructionNumber);
+            }
+        }
+    }
+
+    private static String output(ArrayList<CommandExecutor> executors) throws IOException {
+        IOFile ioFile = new IOFile("test");
+        StringBuilder output = new StringBuilder();
+        for (CommandExecutor executor : executors) {
+            ioFile.writeOutputForStrategy(executor.snapshot(), output);
+        }
+        return output.toString();
+    }
+
+}
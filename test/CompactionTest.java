@@ -0,0 +1,86 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class CompactionTest {
+
+    @Test
+    void fullCompactionMovesEveryBlock() {
+        Memory memory = withGaps();
+        memory.compact();
+        assertEquals(3, memory.getMovedBlocks());
+        assertEquals(60, memory.getMovedBytes());
+        assertEquals(30, memory.getMaxAvailableBlock());
+        assertEquals(70, memory.getFreeBlocks().get(0).getStartAddress());
+    }
+
+    @Test
+    void slideMovesBlocksFromTheStartUntilTheRequestFits() {
+        Memory memory = withGaps();
+        assertTrue(memory.compact(20, CompactionPolicy.SLIDE));
+        assertEquals(1, memory.getMovedBlocks());
+        assertEquals(30, memory.getMovedBytes());
+        assertEquals(10, memory.getStartAddress(3));
+        assertEquals(20, memory.getMaxAvailableBlock());
+    }
+
+    @Test
+    void minimalMovesTheFewestBytes() {
+        Memory memory = withGaps();
+        assertTrue(memory.compact(20, CompactionPolicy.MINIMAL));
+        assertEquals(1, memory.getMovedBlocks());
+        assertEquals(10, memory.getMovedBytes());
+        assertEquals(20, memory.getStartAddress(3));
+        assertEquals(50, memory.getStartAddress(5));
+        assertEquals(20, memory.getMaxAvailableBlock());
+    }
+
+    @Test
+    void partialCompactionFailsWithoutEnoughFreeMemory() {
+        Memory memory = withGaps();
+        assertFalse(memory.compact(40, CompactionPolicy.MINIMAL));
+        assertEquals(10, memory.getMaxAvailableBlock());
+    }
+
+    @Test
+    void failedAllocationIsRetriedAfterCompaction() {
+        CommandExecutor executor = new CommandExecutor(withGaps());
+        executor.reportCompactions();
+        executor.allocate(1, 8, 20);
+        assertEquals("A;1;10\n", executor.getErrors().toString());
+
+        executor.setCompactionPolicy(CompactionPolicy.MINIMAL);
+        executor.allocate(2, 9, 20);
+        assertEquals(60, executor.getMemory().getStartAddress(9));
+        executor.allocate(3, 10, 40);
+        executor.compact(4);
+        assertEquals("A;1;10\nA;3;10\n", executor.getErrors().toString());
+
+        // The allocation of 40 bytes is more than the free memory, so it does not compact.
+        assertEquals("A;2;1;10\nC;4;4;80\n", executor.getCompactions().toString());
+    }
+
+    /**
+     * Return a memory of 100 bytes with blocks 1 (10 bytes), 3 (30), 5 (10) and 7 (20), and free blocks
+     * of 10 bytes at 10, 50 and 70.
+     * @return the memory.
+     */
+    private static Memory withGaps() {
+        Memory memory = new Memory(new FirstFit());
+        memory.setCapacity(100);
+        memory.allocateBlock(1, 10);
+        memory.allocateBlock(2, 10);
+        memory.allocateBlock(3, 30);
+        memory.allocateBlock(4, 10);
+        memory.allocateBlock(5, 10);
+        memory.allocateBlock(6, 10);
+        memory.allocateBlock(7, 20);
+        memory.deallocateBlock(2);
+        memory.deallocateBlock(4);
+        memory.deallocateBlock(6);
+        return memory;
+    }
+
+}
@@ -0,0 +1,140 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class ConcurrentMemoryTest {
+
+    private static final long CAPACITY = 1 << 20;
+    private static final int LIVE_BLOCKS = 1000;
+    private static final int OPERATIONS = 200_000;
+
+    /**
+     * Each thread allocates blocks with ids of its own and replaces random ones. Half of the blocks it replaces are
+     * handed to the next thread, which deallocates them, so blocks are also deallocated by a thread that did not
+     * allocate them. Once the threads have stopped the live blocks are checked and deallocated.
+     */
+    @ParameterizedTest
+    @ValueSource(ints = { 1, 2, 4, 8 })
+    void churnKeepsArenasConsistent(int threadCount) throws InterruptedException {
+        ConcurrentMemory memory = new ConcurrentMemory(CAPACITY, threadCount, FirstFit::new);
+        ArrayList<ConcurrentLinkedQueue<Integer>> handedIds = new ArrayList<>();
+        for (int t = 0; t < threadCount; t++) {
+            handedIds.add(new ConcurrentLinkedQueue<>());
+        }
+        int[][] liveIdsByThread = new int[threadCount][];
+        int[] liveCounts = new int[threadCount];
+        long[] lostBlocks = new long[threadCount];
+        long[] otherThreadDeallocations = new long[threadCount];
+        Thread[] threads = new Thread[threadCount];
+
+        long start = System.nanoTime();
+        for (int t = 0; t < threadCount; t++) {
+            int thread = t;
+            SplittableRandom random = new SplittableRandom(thread);
+            threads[t] = new Thread(() -> {
+
+                // Ids of thread t are t, t + threadCount, t + 2 * threadCount, ...
+                int[] liveIds = new int[LIVE_BLOCKS / threadCount];
+                int liveCount = 0;
+                int nextId = thread;
+                ConcurrentLinkedQueue<Integer> received = handedIds.get(thread);
+                ConcurrentLinkedQueue<Integer> next = handedIds.get((thread + 1) % threadCount);
+                for (int i = 0; i < OPERATIONS; i++) {
+                    Integer handedId = received.poll();
+                    if (handedId != null) {
+                        if (!memory.deallocateBlock(handedId)) {
+                            lostBlocks[thread]++;
+                        }
+                        if (handedId % threadCount != thread) {
+                            otherThreadDeallocations[thread]++;
+                        }
+                    }
+                    if (liveCount == liveIds.length) {
+                        int index = random.nextInt(liveCount);
+                        if (random.nextBoolean()) {
+                            next.add(liveIds[index]);
+                        } else if (!memory.deallocateBlock(liveIds[index])) {
+                            lostBlocks[thread]++;
+                        }
+                        liveIds[index] = liveIds[--liveCount];
+                    }
+                    if (memory.allocateBlock(nextId, 1 + random.nextInt((int) (CAPACITY / LIVE_BLOCKS)))) {
+                        liveIds[liveCount++] = nextId;
+                    }
+                    nextId += threadCount;
+                }
+                liveIdsByThread[thread] = liveIds;
+                liveCounts[thread] = liveCount;
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("ConcurrentMemory, %d threads: %.0f operations/s%n",
+                threadCount, threadCount * (double) OPERATIONS / seconds);
+
+        long deallocatedByOthers = 0;
+        for (int t = 0; t < threadCount; t++) {
+            assertEquals(0, lostBlocks[t], "blocks lost by thread " + t);
+            deallocatedByOthers += otherThreadDeallocations[t];
+        }
+        if (threadCount > 1) {
+            assertTrue(deallocatedByOthers > 0, "no block was deallocated by another thread");
+        }
+
+        // The handed ids no thread has taken yet are still allocated.
+        ArrayList<Integer> liveIds = new ArrayList<>();
+        for (int t = 0; t < threadCount; t++) {
+            for (int i = 0; i < liveCounts[t]; i++) {
+                liveIds.add(liveIdsByThread[t][i]);
+            }
+            liveIds.addAll(handedIds.get(t));
+        }
+        checkArenas(memory, liveIds);
+
+        for (int id : liveIds) {
+            assertTrue(memory.deallocateBlock(id), "block " + id + " is lost");
+        }
+        for (int i = 0; i < memory.getArenaCount(); i++) {
+            assertTrue(memory.getArena(i).isEmpty(), "arena " + i + " is not empty");
+            assertEquals(memory.getArena(i).getCapacity(), memory.getArena(i).getTotalFreeMemory());
+        }
+    }
+
+    /**
+     * Check that every live block is in exactly one arena, the blocks of an arena lie inside it without
+     * overlapping, and its free and used bytes add up to its capacity.
+     */
+    private static void checkArenas(ConcurrentMemory memory, ArrayList<Integer> liveIds) {
+        int blockCount = 0;
+        for (int i = 0; i < memory.getArenaCount(); i++) {
+            Memory arena = memory.getArena(i);
+            long usedMemory = 0;
+            long nextStartAddress = 0;
+            for (Block block : arena.getSortedBlocks()) {
+                assertTrue(block.getStartAddress() >= nextStartAddress, "block " + block.getId() + " overlaps in arena " + i);
+                usedMemory += block.getSize();
+                nextStartAddress = block.getEndAddress() + 1;
+                blockCount++;
+            }
+            assertTrue(nextStartAddress <= arena.getCapacity(), "a block ends after arena " + i);
+
+            // A free byte at the very end is not counted as free memory.
+            long hiddenMemory = nextStartAddress == arena.getCapacity() - 1 ? 1 : 0;
+            assertEquals(arena.getCapacity(), usedMemory + arena.getTotalFreeMemory() + hiddenMemory, "bytes of arena " + i);
+        }
+        for (int id : liveIds) {
+            assertTrue(memory.getStartAddress(id) >= 0, "block " + id + " is lost");
+        }
+        assertEquals(liveIds.size(), blockCount);
+    }
+
+}
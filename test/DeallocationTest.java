@@ -0,0 +1,65 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.Test;
+
+class DeallocationTest {
+
+    @Test
+    void failedDeallocationTellsFailedIdsFromUnknownIds() {
+        Memory memory = new Memory(new FirstFit());
+        memory.setCapacity(100);
+        CommandExecutor executor = new CommandExecutor(memory);
+        executor.allocate(1, 1, 60);
+        executor.allocate(2, 2, 60);
+        executor.deallocate(3, 2);
+        executor.deallocate(4, 3);
+        executor.deallocate(5, 1);
+        assertEquals("A;2;40\nD;3;1\nD;4;0\n", executor.getErrors().toString());
+    }
+
+    @Test
+    void repeatedIdsAreDeallocatedEarliestFirst() {
+        Memory memory = new Memory(new FirstFit());
+        memory.setCapacity(100);
+        memory.allocateBlock(1, 10);
+        memory.allocateBlock(2, 10);
+        memory.allocateBlock(1, 20);
+        assertTrue(memory.deallocateBlock(1));
+        assertEquals(20, memory.getBlock(1).getSize());
+        assertEquals(20, memory.getStartAddress(1));
+        assertTrue(memory.deallocateBlock(1));
+        assertFalse(memory.deallocateBlock(1));
+        assertEquals(10, memory.getStartAddress(2));
+    }
+
+    @Test
+    void manyIdsAreDeallocatedInAnyOrder() {
+        Memory memory = new Memory(new FirstFit());
+        memory.setCapacity(1 << 20);
+        int count = 100_000;
+        int[] ids = new int[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = i * 7919;
+            assertTrue(memory.allocateBlock(ids[i], 8));
+        }
+
+        // Shuffle the ids.
+        SplittableRandom random = new SplittableRandom(3);
+        for (int i = count - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int id = ids[i];
+            ids[i] = ids[j];
+            ids[j] = id;
+        }
+        for (int id : ids) {
+            assertTrue(memory.deallocateBlock(id));
+        }
+        assertTrue(memory.isEmpty());
+        assertEquals(1 << 20, memory.getTotalFreeMemory());
+    }
+
+}
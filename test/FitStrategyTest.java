@@ -0,0 +1,101 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.Test;
+
+class FitStrategyTest {
+
+    @Test
+    void bestFitTakesTheSmallestFreeBlockWithTheLowestAddress() {
+        Memory memory = withFreeBlocks(new BestFit());
+        memory.allocateBlock(8, 10);
+        memory.allocateBlock(9, 10);
+        memory.allocateBlock(10, 15);
+        assertEquals(40, memory.getStartAddress(8));
+        assertEquals(60, memory.getStartAddress(9));
+        assertEquals(10, memory.getStartAddress(10));
+    }
+
+    @Test
+    void worstFitTakesTheLargestFreeBlock() {
+        Memory memory = withFreeBlocks(new WorstFit());
+        memory.allocateBlock(8, 5);
+        memory.allocateBlock(9, 5);
+        memory.allocateBlock(10, 5);
+        assertEquals(10, memory.getStartAddress(8));
+        assertEquals(15, memory.getStartAddress(9));
+
+        // The free blocks are now all 10 bytes, the lowest address is taken.
+        assertEquals(20, memory.getStartAddress(10));
+    }
+
+    /**
+     * Allocate and deallocate random blocks, and check after each instruction that the indexed searches
+     * find the same free blocks as a scan of the free blocks.
+     */
+    @Test
+    void indexedSearchesMatchAScan() {
+        Memory memory = new Memory(new FirstFit());
+        memory.setCapacity(10_000);
+        SplittableRandom random = new SplittableRandom(2);
+        ArrayList<Integer> liveIds = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            if (liveIds.isEmpty() || random.nextInt(10) < 6) {
+                if (memory.allocateBlock(i, 1 + random.nextInt(300))) {
+                    liveIds.add(i);
+                }
+            } else {
+                memory.deallocateBlock(liveIds.remove(random.nextInt(liveIds.size())));
+            }
+            long bytes = 1 + random.nextInt(400);
+            long startAddress = random.nextInt(10_000);
+            long firstFit = -1;
+            long nextFit = -1;
+            long bestFit = -1;
+            long bestFitSize = Long.MAX_VALUE;
+            long largestSize = 0;
+            for (Block freeBlock : memory.getFreeBlocks()) {
+                long size = freeBlock.getSize();
+                if (size >= bytes && firstFit < 0) {
+                    firstFit = freeBlock.getStartAddress();
+                }
+                if (size >= bytes && nextFit < 0 && freeBlock.getStartAddress() >= startAddress) {
+                    nextFit = freeBlock.getStartAddress();
+                }
+                if (size >= bytes && size < bestFitSize) {
+                    bestFit = freeBlock.getStartAddress();
+                    bestFitSize = size;
+                }
+                largestSize = Math.max(largestSize, size);
+            }
+            assertEquals(firstFit, memory.findFirstFit(bytes));
+            assertEquals(nextFit, memory.findFirstFit(startAddress, bytes));
+            assertEquals(bestFit, memory.findBestFit(bytes));
+            assertEquals(largestSize, memory.getLargestFreeBlockSize());
+        }
+    }
+
+    /**
+     * Return a memory of 100 bytes with free blocks of 20 bytes at 10, 10 bytes at 40 and 10 bytes at 60.
+     * @param strategy of the memory.
+     * @return the memory.
+     */
+    private static Memory withFreeBlocks(AllocationStrategy strategy) {
+        Memory memory = new Memory(strategy);
+        memory.setCapacity(100);
+        memory.allocateBlock(1, 10);
+        memory.allocateBlock(2, 20);
+        memory.allocateBlock(3, 10);
+        memory.allocateBlock(4, 10);
+        memory.allocateBlock(5, 10);
+        memory.allocateBlock(6, 10);
+        memory.allocateBlock(7, 30);
+        memory.deallocateBlock(2);
+        memory.deallocateBlock(4);
+        memory.deallocateBlock(6);
+        return memory;
+    }
+
+}
@@ -0,0 +1,41 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+class NextFitTest {
+
+    @Test
+    void searchGoesOnAfterTheLastBlock() {
+        Memory memory = new Memory(new NextFit());
+        memory.setCapacity(100);
+        memory.allocateBlock(1, 10);
+        memory.allocateBlock(2, 10);
+        memory.deallocateBlock(1);
+        memory.allocateBlock(3, 10);
+        assertEquals(20, memory.getStartAddress(3));
+        memory.allocateBlock(4, 5);
+        assertEquals(30, memory.getStartAddress(4));
+    }
+
+    @Test
+    void compactionMovesTheSearchAfterTheLastBlock() {
+        Memory memory = new Memory(new NextFit());
+        memory.setCapacity(100);
+        memory.allocateBlock(1, 10);
+        memory.allocateBlock(2, 20);
+        memory.allocateBlock(3, 10);
+        memory.allocateBlock(4, 10);
+        memory.allocateBlock(5, 10);
+        memory.deallocateBlock(2);
+        memory.deallocateBlock(4);
+
+        // Only block 5 moves, from 50 to 40, which leaves free blocks at 10 and 50.
+        memory.compact(45, CompactionPolicy.MINIMAL);
+        assertEquals(40, memory.getStartAddress(5));
+
+        // The search goes on after block 5 where it is now, instead of wrapping around from its old end.
+        memory.allocateBlock(6, 5);
+        assertEquals(50, memory.getStartAddress(6));
+    }
+
+}
@@ -0,0 +1,93 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class QuickListTest {
+
+    @Test
+    void deallocatedBlockIsReusedForTheSameSize() {
+        Memory memory = withQuickLists(100, 4);
+        memory.allocateBlock(1, 10);
+        memory.allocateBlock(2, 10);
+        memory.deallocateBlock(1);
+
+        // The cached block is reported as free, but is not coalesced with the free block after block 2.
+        assertEquals(1, memory.getCachedBlockCount());
+        assertEquals(2, memory.getFreeBlocks().size());
+        assertEquals(90, memory.getTotalFreeMemory());
+
+        memory.allocateBlock(3, 20);
+        memory.allocateBlock(4, 10);
+        assertEquals(20, memory.getStartAddress(3));
+        assertEquals(0, memory.getStartAddress(4));
+        assertEquals(0, memory.getCachedBlockCount());
+        assertEquals(1, memory.getMetrics().getQuickListHits());
+        assertEquals(3, memory.getMetrics().getQuickListMisses());
+    }
+
+    @Test
+    void fullListEvictsItsOldestBlock() {
+        Memory memory = withQuickLists(100, 2);
+        for (int id = 1; id <= 6; id++) {
+            memory.allocateBlock(id, 10);
+        }
+        memory.deallocateBlock(1);
+        memory.deallocateBlock(3);
+        memory.deallocateBlock(5);
+        assertEquals(2, memory.getCachedBlockCount());
+        assertEquals(1, memory.getMetrics().getQuickListEvictions());
+
+        // Block 1 was evicted, so the newest cached block (5) is reused first.
+        memory.allocateBlock(7, 10);
+        assertEquals(40, memory.getStartAddress(7));
+    }
+
+    @Test
+    void failedAllocationFlushesTheListsAndRetries() {
+        Memory memory = withQuickLists(30, 4);
+        memory.allocateBlock(1, 10);
+        memory.allocateBlock(2, 10);
+        memory.allocateBlock(3, 10);
+        memory.deallocateBlock(1);
+        memory.deallocateBlock(2);
+
+        // Only the coalesced cached blocks can hold 20 bytes.
+        assertTrue(memory.allocateBlock(4, 20));
+        assertEquals(0, memory.getStartAddress(4));
+        assertEquals(0, memory.getCachedBlockCount());
+        assertEquals(2, memory.getMetrics().getQuickListFlushes());
+    }
+
+    @Test
+    void compactionFlushesTheLists() {
+        Memory memory = withQuickLists(100, 4);
+        memory.allocateBlock(1, 10);
+        memory.allocateBlock(2, 10);
+        memory.deallocateBlock(1);
+        memory.compact();
+        assertEquals(0, memory.getCachedBlockCount());
+        assertEquals(0, memory.getStartAddress(2));
+        assertEquals(1, memory.getFreeBlocks().size());
+    }
+
+    @Test
+    void buddyBlocksAreNotCached() {
+        Memory memory = new Memory(new BuddyAllocator());
+        memory.setCapacity(128);
+        memory.setQuickLists(64, 4);
+        memory.allocateBlock(1, 10);
+        memory.deallocateBlock(1);
+        assertEquals(0, memory.getCachedBlockCount());
+        assertEquals(128, memory.getTotalFreeMemory());
+    }
+
+    private static Memory withQuickLists(long capacity, int depth) {
+        Memory memory = new Memory(new FirstFit());
+        memory.setCapacity(capacity);
+        memory.setMetrics(new Metrics());
+        memory.setQuickLists(64, depth);
+        return memory;
+    }
+
+}
@@ -0,0 +1,97 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+
+import org.junit.jupiter.api.Test;
+
+class ReallocationTest {
+
+    @Test
+    void blockShrinksInPlace() {
+        Memory memory = new Memory(new FirstFit());
+        memory.setCapacity(100);
+        memory.allocateBlock(1, 20);
+        memory.allocateBlock(2, 10);
+        assertTrue(memory.reallocateBlock(1, 5));
+        assertEquals(0, memory.getStartAddress(1));
+        assertEquals(5, memory.getBlock(1).getSize());
+        assertEquals(5, memory.getFreeBlocks().get(0).getStartAddress());
+        assertEquals(1, memory.getInPlaceReallocations());
+    }
+
+    @Test
+    void blockGrowsInPlaceIntoTheFreeBlockAfterIt() {
+        Memory memory = new Memory(new FirstFit());
+        memory.setCapacity(100);
+        memory.allocateBlock(1, 10);
+        memory.allocateBlock(2, 10);
+        memory.allocateBlock(3, 10);
+        memory.deallocateBlock(2);
+        assertTrue(memory.reallocateBlock(1, 18));
+        assertEquals(0, memory.getStartAddress(1));
+        assertEquals(18, memory.getBlock(1).getSize());
+        assertEquals(1, memory.getInPlaceReallocations());
+        assertEquals(0, memory.getRelocations());
+    }
+
+    @Test
+    void blockIsRelocatedWithItsBytes() {
+        Memory memory = new Memory(new FirstFit());
+        memory.setCapacity(100);
+        memory.setStorage(ByteBuffer.allocate(100));
+        memory.allocateBlock(1, 10);
+        memory.allocateBlock(2, 10);
+        memory.getBlock(1).getBuffer().put(9, (byte) 7);
+        assertTrue(memory.reallocateBlock(1, 30));
+
+        // Block 1 keeps its place among the allocated blocks.
+        assertEquals(20, memory.getStartAddress(1));
+        assertEquals(7, memory.getBlock(1).getBuffer().get(9));
+        assertEquals(1, memory.getBlocks().get(0).getId());
+        assertEquals(1, memory.getRelocations());
+        assertEquals(0, memory.getFreeBlocks().get(0).getStartAddress());
+    }
+
+    @Test
+    void failedReallocationLeavesTheBlock() {
+        Memory memory = new Memory(new FirstFit());
+        memory.setCapacity(50);
+        CommandExecutor executor = new CommandExecutor(memory);
+        executor.allocate(1, 1, 10);
+        executor.allocate(2, 2, 10);
+        executor.reallocate(3, 1, 40);
+        executor.reallocate(4, 3, 5);
+        assertEquals("R;3;30\n", executor.getErrors().toString());
+        assertEquals(0, memory.getStartAddress(1));
+        assertEquals(10, memory.getBlock(1).getSize());
+
+        // R of an id without a block allocates it.
+        assertEquals(20, memory.getStartAddress(3));
+    }
+
+    @Test
+    void failedReallocationIsRetriedAfterCompaction() {
+        Memory memory = new Memory(new FirstFit());
+        memory.setCapacity(60);
+        CommandExecutor executor = new CommandExecutor(memory);
+        executor.reportCompactions();
+        for (int id = 1; id <= 6; id++) {
+            executor.allocate(id, id, 10);
+        }
+        executor.deallocate(7, 2);
+        executor.deallocate(8, 4);
+        executor.reallocate(9, 3, 30);
+        assertEquals("R;9;10\n", executor.getErrors().toString());
+
+        // Moving block 3 down leaves room for its growth right after it.
+        executor.setCompactionPolicy(CompactionPolicy.MINIMAL);
+        executor.reallocate(10, 3, 30);
+        assertEquals("R;9;10\n", executor.getErrors().toString());
+        assertEquals("R;10;1;10\n", executor.getCompactions().toString());
+        assertEquals(10, memory.getStartAddress(3));
+        assertEquals(30, memory.getBlock(3).getSize());
+        assertTrue(memory.getFreeBlocks().isEmpty());
+    }
+
+}
@@ -0,0 +1,44 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+
+import org.junit.jupiter.api.Test;
+
+class SimulatorServiceTest {
+
+    @Test
+    void badLineIsAnsweredAndSkipped() throws IOException {
+        assertEquals("ok;0\nok;0\nerror;2\nerror;2\nok;100\nok;100\nD;4;0\nD;4;0\n",
+                serve("1000\nA;1;100\nA;x;5\nA;2;50\nD;9\n"));
+    }
+
+    @Test
+    void lineEndingInsideAnInstructionIsSkipped() throws IOException {
+
+        // The newline that ends the bad line has already been read, so the next line must not be skipped.
+        assertEquals("error;1\nerror;1\nok;0\nok;0\nerror;3\nerror;3\nok\nok\n",
+                serve("1000\nA;1\nA;2;50\r\nR;99999999999;1\r\nD;2\n"));
+    }
+
+    @Test
+    void invalidCapacityEndsTheSession() throws IOException {
+        assertEquals("error;1\n", serve("big\nA;1;100\n"));
+    }
+
+    private static String serve(String input) throws IOException {
+        SimulatorService service = new SimulatorService(() -> {
+            ArrayList<CommandExecutor> commandExecutors = new ArrayList<>();
+            commandExecutors.add(new CommandExecutor(new Memory(new FirstFit())));
+            commandExecutors.add(new CommandExecutor(new Memory(new BestFit())));
+            return commandExecutors;
+        }, new IOFile("test"));
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        service.serve(new ByteArrayInputStream(input.getBytes(StandardCharsets.US_ASCII)), output);
+        return output.toString(StandardCharsets.US_ASCII);
+    }
+
+}
@@ -0,0 +1,109 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class SortedBlocksTest {
+
+    @Test
+    void sortedBlocksFollowAddressesNotAllocationOrder() {
+        Memory memory = new Memory(new FirstFit());
+        memory.setCapacity(100);
+        memory.allocateBlock(1, 10);
+        memory.allocateBlock(2, 20);
+        memory.allocateBlock(3, 30);
+        memory.deallocateBlock(1);
+        memory.allocateBlock(4, 5);
+
+        assertEquals("2;3;4", ids(memory.getBlocks()));
+        assertEquals("4;2;3", ids(memory.getSortedBlocks()));
+        assertEquals(0, memory.getSortedBlocks().get(0).getStartAddress());
+    }
+
+    @Test
+    void compactionKeepsAddressOrder() {
+        Memory memory = new Memory(new FirstFit());
+        memory.setCapacity(100);
+        memory.allocateBlock(1, 10);
+        memory.allocateBlock(2, 10);
+        memory.allocateBlock(3, 10);
+        memory.deallocateBlock(1);
+        memory.allocateBlock(4, 5);
+        memory.compact();
+
+        assertEquals("4;2;3", ids(memory.getSortedBlocks()));
+        assertEquals(5, memory.getBlock(2).getStartAddress());
+        assertEquals(15, memory.getBlock(3).getStartAddress());
+    }
+
+    /**
+     * Allocate and deallocate random blocks, and check after each instruction that the sorted blocks
+     * are the allocated blocks in address order and, with the free blocks, cover the memory.
+     */
+    @ParameterizedTest
+    @ValueSource(strings = { "first", "best", "worst", "next", "buddy", "tlsf" })
+    void sortedBlocksMatchAddressesAfterChurn(String strategy) {
+        Memory memory = new Memory(Main.createStrategy(strategy));
+        memory.setCapacity(4096);
+        SplittableRandom random = new SplittableRandom(1);
+        ArrayList<Integer> liveIds = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            if (liveIds.isEmpty() || random.nextInt(10) < 6) {
+                if (memory.allocateBlock(i, 1 + random.nextInt(200))) {
+                    liveIds.add(i);
+                }
+            } else {
+                int id = liveIds.remove(random.nextInt(liveIds.size()));
+                assertTrue(memory.deallocateBlock(id));
+            }
+            if (i % 500 == 499) {
+                memory.compact();
+            }
+            checkSortedBlocks(memory);
+        }
+    }
+
+    private static void checkSortedBlocks(Memory memory) {
+        ArrayList<Block> sortedBlocks = memory.getSortedBlocks();
+        HashSet<Integer> ids = new HashSet<>();
+        for (Block block : memory.getBlocks()) {
+            ids.add(block.getId());
+        }
+        assertEquals(ids.size(), sortedBlocks.size());
+
+        // Allocated and free blocks alternate without gaps, up to a single free byte at the end.
+        ArrayList<Block> freeBlocks = memory.getFreeBlocks();
+        long address = 0;
+        int free = 0;
+        for (Block block : sortedBlocks) {
+            assertTrue(ids.contains(block.getId()));
+            while (free < freeBlocks.size() && freeBlocks.get(free).getStartAddress() < block.getStartAddress()) {
+                assertEquals(address, freeBlocks.get(free).getStartAddress());
+                address = freeBlocks.get(free++).getEndAddress() + 1;
+            }
+            assertEquals(address, block.getStartAddress());
+            address = block.getEndAddress() + 1;
+        }
+        if (free < freeBlocks.size()) {
+            assertEquals(address, freeBlocks.get(free).getStartAddress());
+            address = freeBlocks.get(free++).getEndAddress() + 1;
+        }
+        assertEquals(freeBlocks.size(), free);
+        assertTrue(address >= memory.getCapacity() - 1);
+    }
+
+    private static String ids(ArrayList<Block> blocks) {
+        StringBuilder ids = new StringBuilder();
+        for (Block block : blocks) {
+            ids.append(ids.length() == 0 ? "" : ";").append(block.getId());
+        }
+        return ids.toString();
+    }
+
+}
@@ -0,0 +1,85 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import org.junit.jupiter.api.Test;
+
+class TraceGeneratorTest {
+
+    @Test
+    void fixedLifetimesAreExact() throws IOException {
+        long[] lifetimes = measureLifetimes("fixed:5", 1);
+        assertTrue(lifetimes.length > 1000);
+        for (long lifetime : lifetimes) {
+            assertEquals(5, lifetime);
+        }
+    }
+
+    @Test
+    void fixedLifetimesWithIdleSteps() throws IOException {
+
+        // Idle steps are not instructions, so lifetimes in instructions can only be shorter.
+        long[] lifetimes = measureLifetimes("fixed:5", 0.9);
+        assertTrue(lifetimes.length > 1000);
+        double mean = mean(lifetimes);
+        assertTrue(mean > 4 && mean <= 5, "mean lifetime " + mean);
+    }
+
+    @Test
+    void uniformLifetimesStayInRange() throws IOException {
+        long[] lifetimes = measureLifetimes("uniform:10:30", 1);
+        double mean = mean(lifetimes);
+        assertTrue(Math.abs(mean - 20) < 1, "mean lifetime " + mean);
+        for (long lifetime : lifetimes) {
+
+            // Deallocations due at the same step are written one after another.
+            assertTrue(lifetime >= 10 && lifetime <= 40, "lifetime " + lifetime);
+        }
+    }
+
+    @Test
+    void exponentialLifetimesMatchTheMean() throws IOException {
+        long[] lifetimes = measureLifetimes("exponential:1000", 1);
+        double mean = mean(lifetimes);
+        assertTrue(Math.abs(mean - 1000) < 50, "mean lifetime " + mean);
+    }
+
+    /**
+     * Generate a trace with a big memory and only A and D, and measure the lifetimes of the deallocated blocks.
+     * @param lifetimeDistribution of the generator.
+     * @param allocateRatio of the generator.
+     * @return the number of instructions between the A and the D of each deallocated block.
+     */
+    private static long[] measureLifetimes(String lifetimeDistribution, double allocateRatio) throws IOException {
+        TraceGenerator generator = new TraceGenerator(1, "uniform:1:64", lifetimeDistribution);
+        StringWriter trace = new StringWriter();
+        generator.generate(trace, 1L << 40, 200_000, allocateRatio, 0, 0, 0);
+
+        String[] lines = trace.toString().split("\n");
+        HashMap<String, Integer> allocations = new HashMap<>();
+        long[] lifetimes = new long[lines.length];
+        int count = 0;
+        for (int instruction = 1; instruction < lines.length; instruction++) {
+            String[] fields = lines[instruction].split(";");
+            if (fields[0].equals("A")) {
+                allocations.put(fields[1], instruction);
+            } else {
+                lifetimes[count++] = instruction - allocations.remove(fields[1]);
+            }
+        }
+        return Arrays.copyOf(lifetimes, count);
+    }
+
+    private static double mean(long[] values) {
+        double sum = 0;
+        for (long value : values) {
+            sum += value;
+        }
+        return sum / values.length;
+    }
+
+}